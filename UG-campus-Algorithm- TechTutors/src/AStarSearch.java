@@ -8,8 +8,8 @@ import java.util.*;
  *
  * Features:
  * - Standard A* search (optimal shortest path).
- * - Multiple path discovery (up to 3 variations).
- * - Landmark-based pathfinding (forces algorithm to pass through specific nodes).
+ * - Multiple path discovery (k shortest loopless alternatives).
+ * - Landmark-based pathfinding (visits every listed landmark in the best order).
  */
 public class AStarSearch {
     
@@ -75,6 +75,13 @@ public class AStarSearch {
      * Finds the shortest path between start and end nodes in a weighted graph.
      */
     public static AStarResult aStarSearch(Graph graph, Nodes start, Nodes end) {
+        return aStarSearch(graph, start, end, null);
+    }
+
+    /**
+     * A* search that records its steps into the trace (explain mode; null = off).
+     */
+    public static AStarResult aStarSearch(Graph graph, Nodes start, Nodes end, SearchTrace trace) {
         PriorityQueue<AStarNode> openSet = new PriorityQueue<>();  // Nodes to explore
         Set<Nodes> closedSet = new HashSet<>();                    // Already explored
         Map<Nodes, AStarNode> allNodes = new HashMap<>();          // Store visited nodes
@@ -83,6 +90,7 @@ public class AStarSearch {
         AStarNode startNode = new AStarNode(start, 0, heuristic(start, end), null);
         openSet.add(startNode);
         allNodes.put(start, startNode);
+        if (trace != null) trace.record(SearchTrace.Event.HEAP_PUSH, start, null, startNode.fCost);
 
         int nodesExplored = 0;
 
@@ -90,6 +98,10 @@ public class AStarSearch {
             // Pick the node with lowest fCost
             AStarNode currentNode = openSet.poll();
             nodesExplored++;
+            if (trace != null) {
+                trace.record(SearchTrace.Event.HEAP_POP, currentNode.node, null, currentNode.fCost);
+                trace.record(SearchTrace.Event.SETTLE, currentNode.node, currentNode.parent == null ? null : currentNode.parent.node, currentNode.gCost);
+            }
 
             // If goal is reached -> reconstruct and return path
             if (currentNode.node.equals(end)) {
@@ -108,6 +120,7 @@ public class AStarSearch {
 
                 // Skip if already processed
                 if (closedSet.contains(neighbor)) {
+                    if (trace != null) trace.record(SearchTrace.Event.PRUNE, neighbor, currentNode.node, currentNode.gCost + edge.weight);
                     continue;
                 }
 
@@ -131,9 +144,13 @@ public class AStarSearch {
                     neighborNode.gCost = tentativeGCost;
                     neighborNode.fCost = tentativeGCost + neighborNode.hCost;
 
+                    if (trace != null) trace.record(SearchTrace.Event.RELAX, neighbor, currentNode.node, tentativeGCost);
                     if (!openSet.contains(neighborNode)) {
                         openSet.add(neighborNode);
+                        if (trace != null) trace.record(SearchTrace.Event.HEAP_PUSH, neighbor, currentNode.node, neighborNode.fCost);
                     }
+                } else if (trace != null) {
+                    trace.record(SearchTrace.Event.SCAN, neighbor, currentNode.node, tentativeGCost);
                 }
             }
         }
@@ -166,32 +183,22 @@ public class AStarSearch {
     }
     
     /**
-     * Finds multiple unique paths (up to 3 variations).
-     * Useful for suggesting alternatives.
+     * Finds up to numPaths genuinely different loopless paths, shortest first.
+     * Uses Yen's algorithm (KShortestPaths); useful for suggesting alternatives.
      */
     public static List<AStarResult> findMultiplePaths(Graph graph, Nodes start, Nodes end, int numPaths) {
         List<AStarResult> paths = new ArrayList<>();
-        Set<String> usedPaths = new HashSet<>();
-
-        for (int i = 0; i < numPaths && i < 3; i++) {
-            AStarResult result = aStarSearch(graph, start, end);
-
-            if (result.path.isEmpty() || result.totalDistance == Double.POSITIVE_INFINITY) {
-                break;
-            }
-
-            String pathString = String.join(" -> ", result.path);
+        CompactGraph compact = graph.toCompact();
 
-            if (!usedPaths.contains(pathString)) {
-                paths.add(result);
-                usedPaths.add(pathString);
-            }
+        for (KShortestPaths.PathResult result : KShortestPaths.find(compact, compact.indexOf(start), compact.indexOf(end), numPaths, null)) {
+            paths.add(new AStarResult(compact.pathNames(result.nodes), result.cost, result.settled));
         }
         return paths;
     }
     
     /**
-     * Finds a path that passes through specific landmarks (if any).
+     * Finds a path that passes through all of the given landmarks (if any),
+     * visiting them in the order that minimises total distance (WaypointTour).
      * Example: Path from Hostel -> Library -> Lecture Hall.
      */
     public static AStarResult findPathWithLandmarks(Graph graph, Nodes start, Nodes end, List<String> landmarks) {
@@ -216,33 +223,14 @@ public class AStarSearch {
             return aStarSearch(graph, start, end);
         }
 
-        List<String> bestPath = new ArrayList<>();
-        double bestDistance = Double.POSITIVE_INFINITY;
-        int bestNodesExplored = 0;
-
-        // Try routing through each landmark and pick the shortest total distance
-        for (Nodes landmark : landmarkNodes) {
-            AStarResult toLandmark = aStarSearch(graph, start, landmark);
-            AStarResult fromLandmark = aStarSearch(graph, landmark, end);
-
-            if (!toLandmark.path.isEmpty() && !fromLandmark.path.isEmpty()) {
-                double totalDistance = toLandmark.totalDistance + fromLandmark.totalDistance;
-
-                if (totalDistance < bestDistance) {
-                    bestDistance = totalDistance;
-                    bestNodesExplored = toLandmark.nodesExplored + fromLandmark.nodesExplored;
+        // Visit every landmark once, in the cheapest order, and finish at the destination
+        List<Nodes> waypoints = new ArrayList<>(new LinkedHashSet<>(landmarkNodes));
+        WaypointTour.TourResult tour = WaypointTour.plan(graph, start, waypoints, end, WaypointTour.TourType.FIXED_END);
 
-                    // Merge paths (avoid duplicating landmark node)
-                    List<String> combinedPath = new ArrayList<>(toLandmark.path);
-                    for (int i = 1; i < fromLandmark.path.size(); i++) {
-                        combinedPath.add(fromLandmark.path.get(i));
-                    }
-                    bestPath = combinedPath;
-                }
-            }
+        if (!tour.reachable) {
+            return new AStarResult(new ArrayList<>(), Double.POSITIVE_INFINITY, tour.nodesExplored);
         }
-
-        return new AStarResult(bestPath, bestDistance, bestNodesExplored);
+        return new AStarResult(tour.path, tour.totalDistance, tour.nodesExplored);
     }
 }
 
@@ -206,6 +206,16 @@ public class AccessibilityFeatures {
         return baseTime * adjustment;
     }
     
+    /**
+     * Travel time multiplier for passing through a location with the given accessibility type.
+     * Locations without data use the baseline score, so only the user-type multiplier applies.
+     */
+    static double accessibilityTimeFactor(String location, String accessibilityType) {
+        AccessibilityInfo info = locationAccessibility.get(location);
+        double score = info == null ? 1.0 : calculateAccessibilityScore(info, accessibilityType);
+        return adjustTimeForAccessibility(1.0, accessibilityType, score);
+    }
+    
     /**
      * Generates a detailed accessibility analysis report for a path.
      */
@@ -0,0 +1,256 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * BetweennessCentrality - finds the walkways and locations most routes pass through
+ * ----------------------------------------------------------------------------------
+ * The congested locations in TrafficSimulator are hand-picked. Betweenness
+ * measures how many shortest paths go through each location and walkway, which
+ * identifies the real chokepoints of the network.
+ *
+ * How it works (Brandes' algorithm):
+ * - One Dijkstra per source counts shortest paths to every node; walking back in
+ *   reverse settle order accumulates each node's dependency on the others.
+ *   Predecessors are found through the reverse adjacency (dist[v] + cost = dist[w])
+ *   instead of stored lists, so a pass allocates nothing.
+ * - Sources run in parallel through ParallelPartitions.
+ * - Exact mode uses every node as a source. Sampled mode uses k random sources
+ *   and scales by n / k; k is chosen from a Hoeffding bound so every normalized
+ *   score is within epsilon of the exact one with probability 1 - delta.
+ *
+ * Scores treat every edge as directed (undirected walkways are two edges).
+ * Edge costs must be positive: Dijkstra's settle order is only a valid path
+ * order when every edge moves strictly further from the source.
+ */
+public class BetweennessCentrality {
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Centrality scores of one run.
+     */
+    public static class CentralityResult {
+        final CompactGraph graph;
+        public double[] nodeScores;       // Node -> betweenness (shortest paths through it)
+        public double[] normalized;       // Node -> score / ((n - 1)(n - 2)), in [0, 1]
+        public double[] edgeScores;       // Edge -> shortest paths using the walkway
+        public int sources;               // Sources used (n when exact)
+        public boolean exact;             // All sources were used
+        public double errorBound;         // Max error of any normalized score (0 when exact)
+        public double confidence;         // Probability that the bound holds
+        public double elapsedMillis;
+
+        public CentralityResult(CompactGraph graph, double[] nodeScores, double[] normalized, double[] edgeScores,
+            int sources, boolean exact, double errorBound, double confidence, double elapsedMillis) {
+            this.graph = graph;
+            this.nodeScores = nodeScores;
+            this.normalized = normalized;
+            this.edgeScores = edgeScores;
+            this.sources = sources;
+            this.exact = exact;
+            this.errorBound = errorBound;
+            this.confidence = confidence;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        // Locations with the highest betweenness, best first
+        public List<String> topLocations(int k) {
+            List<String> names = new ArrayList<>();
+            for (int v : topIndices(nodeScores, k)) names.add(graph.name(v));
+            return names;
+        }
+
+        // Walkways ("from -> to") with the highest betweenness, best first
+        public List<String> topWalkways(int k) {
+            List<String> names = new ArrayList<>();
+            for (int e : topIndices(edgeScores, k)) names.add(graph.name(graph.tail[e]) + " -> " + graph.name(graph.head[e]));
+            return names;
+        }
+
+        /**
+         * Location congestion multipliers proportional to centrality: the most
+         * central location gets maxFactor, a location no path crosses gets 1.0.
+         * Can be passed to TrafficSimulator.seedLocationFactors.
+         */
+        public Map<String, Double> suggestedTrafficFactors(double maxFactor) {
+            double top = 0;
+            for (double score : normalized) top = Math.max(top, score);
+            Map<String, Double> factors = new LinkedHashMap<>();
+            for (int v = 0; v < normalized.length; v++) {
+                factors.put(graph.name(v), top == 0 ? 1.0 : 1.0 + (maxFactor - 1.0) * normalized[v] / top);
+            }
+            return factors;
+        }
+
+        private static int[] topIndices(double[] scores, int k) {
+            return IntStream.range(0, scores.length).boxed()
+                .sorted((a, b) -> Double.compare(scores[b], scores[a]))
+                .limit(k).mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Exact betweenness on walking distance.
+     */
+    public static CentralityResult exact(Graph graph) {
+        CompactGraph compact = graph.toCompact();
+        return compute(compact, IntStream.range(0, compact.nodeCount()).toArray(), null, 0, 1);
+    }
+
+    /**
+     * Sampled betweenness: every normalized score is within epsilon of the exact
+     * value with probability 1 - delta. Falls back to exact when that needs n or
+     * more sources.
+     */
+    public static CentralityResult sampled(Graph graph, double epsilon, double delta, long seed) {
+        return sampled(graph.toCompact(), null, epsilon, delta, seed);
+    }
+
+    /**
+     * @param costs Per-edge costs (null = base weights)
+     */
+    public static CentralityResult sampled(CompactGraph graph, double[] costs, double epsilon, double delta, long seed) {
+        int n = graph.nodeCount();
+        int k = samplesFor(n, epsilon, delta);
+        if (k >= n) {
+            return compute(graph, IntStream.range(0, n).toArray(), costs, 0, 1);
+        }
+        // k distinct sources (partial Fisher-Yates)
+        int[] all = IntStream.range(0, n).toArray();
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int swap = all[i];
+            all[i] = all[j];
+            all[j] = swap;
+        }
+        return compute(graph, Arrays.copyOf(all, k), costs, epsilon, 1 - delta);
+    }
+
+    /**
+     * Sources needed for a normalized error of epsilon for all n nodes at once
+     * (Hoeffding plus a union bound over the nodes).
+     */
+    static int samplesFor(int n, double epsilon, double delta) {
+        if (n < 3) {
+            return n;
+        }
+        double range = (double) n / (n - 1);   // Range of one source's scaled contribution
+        double k = range * range * Math.log(2.0 * n / delta) / (2 * epsilon * epsilon);
+        return (int) Math.min(n, Math.ceil(k));
+    }
+
+    /**
+     * @throws IllegalArgumentException if an edge cost is zero, negative or NaN
+     */
+    static CentralityResult compute(CompactGraph graph, int[] sources, double[] costs, double errorBound, double confidence) {
+        long startTime = System.nanoTime();
+        int n = graph.nodeCount();
+        int m = graph.edgeCount();
+        double[] edgeCosts = costs == null ? graph.weight : costs;
+        for (int e = 0; e < m; e++) {
+            if (!(edgeCosts[e] > 0)) {
+                throw new IllegalArgumentException("Edge costs must be positive: " + graph.name(graph.tail[e])
+                    + " -> " + graph.name(graph.head[e]) + " costs " + edgeCosts[e]);
+            }
+        }
+        // Node scores in [0, n), edge scores in [n, n + m)
+        double[] scores = new double[n + m];
+        ParallelPartitions.sum(sources.length, scores, (from, to, sums) -> {
+            Pass pass = new Pass(graph, edgeCosts);
+            for (int i = from; i < to; i++) pass.run(sources[i], sums);
+        });
+
+        // Scale sampled sums up to all n sources
+        double scale = (double) n / sources.length;
+        double[] nodeScores = Arrays.copyOfRange(scores, 0, n);
+        double[] edgeScores = Arrays.copyOfRange(scores, n, n + m);
+        double[] normalized = new double[n];
+        double pairs = n > 2 ? (double) (n - 1) * (n - 2) : 1;
+        for (int v = 0; v < n; v++) {
+            nodeScores[v] *= scale;
+            normalized[v] = nodeScores[v] / pairs;
+        }
+        for (int e = 0; e < m; e++) edgeScores[e] *= scale;
+
+        return new CentralityResult(graph, nodeScores, normalized, edgeScores, sources.length,
+            sources.length == n, errorBound, confidence, (System.nanoTime() - startTime) / 1_000_000.0);
+    }
+
+    // Workspace for single-source passes, reused across the sources of one partition
+    private static final class Pass {
+        private final CompactGraph graph;
+        private final int n;              // Offset of the edge scores
+        private final double[] costs;
+        private final SearchSpace space;
+        private final int[] order;
+        private final int[] rank;         // Node -> position in the settle order of the current pass
+        private final double[] sigma;     // Number of shortest paths from the source
+        private final double[] delta;     // Dependency of the source on each node
+
+        Pass(CompactGraph graph, double[] costs) {
+            this.graph = graph;
+            this.n = graph.nodeCount();
+            this.costs = costs;
+            this.space = new SearchSpace(graph);
+            this.order = new int[graph.nodeCount()];
+            this.rank = new int[graph.nodeCount()];
+            this.sigma = new double[graph.nodeCount()];
+            this.delta = new double[graph.nodeCount()];
+        }
+
+        // Adds one source's dependencies to scores (nodes first, then edges at offset n)
+        void run(int source, double[] scores) {
+            space.start(costs, false);
+            space.addSource(source, 0.0);
+            int settled = 0;
+            for (int v; (v = space.settleNext()) != -1; settled++) {
+                order[settled] = v;
+                rank[v] = settled;
+            }
+
+            // Path counts in settle order: sigma[w] = sum of sigma over shortest-path predecessors,
+            // all of which are settled (and counted) before w
+            sigma[source] = 1;
+            for (int i = 1; i < settled; i++) {
+                int w = order[i];
+                double count = 0;
+                for (int slot = graph.firstIn[w]; slot < graph.firstIn[w + 1]; slot++) {
+                    int e = graph.inEdge[slot];
+                    if (isTight(e, w)) count += sigma[graph.tail[e]];
+                }
+                sigma[w] = count;
+            }
+
+            // Dependencies in reverse settle order
+            for (int i = settled - 1; i > 0; i--) {
+                int w = order[i];
+                double share = (1 + delta[w]) / sigma[w];
+                for (int slot = graph.firstIn[w]; slot < graph.firstIn[w + 1]; slot++) {
+                    int e = graph.inEdge[slot];
+                    if (!isTight(e, w)) continue;
+                    int v = graph.tail[e];
+                    double contribution = sigma[v] * share;
+                    scores[n + e] += contribution;
+                    delta[v] += contribution;
+                }
+                scores[w] += delta[w];
+            }
+
+            for (int i = 0; i < settled; i++) {
+                sigma[order[i]] = 0;
+                delta[order[i]] = 0;
+            }
+        }
+
+        // Whether edge e (v -> w) lies on a shortest path to w. Ties within EPSILON only
+        // count forward in settle order, so the predecessor graph stays acyclic.
+        private boolean isTight(int e, int w) {
+            int v = graph.tail[e];
+            if (!space.isSettled(v) || costs[e] == Double.POSITIVE_INFINITY || rank[v] >= rank[w]) {
+                return false;
+            }
+            double via = space.distance(v) + costs[e];
+            return Math.abs(via - space.distance(w)) <= EPSILON * Math.max(1.0, space.distance(w));
+        }
+    }
+}
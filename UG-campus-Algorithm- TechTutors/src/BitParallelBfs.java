@@ -0,0 +1,111 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * BitParallelBfs - hop counts from many sources at once
+ * ------------------------------------------------------
+ * Some analyses (fewest junctions between buildings, signage planning) only
+ * need the number of hops, not weighted distances. This engine runs a
+ * breadth-first search for up to 64 sources simultaneously on the CompactGraph:
+ * every node carries a long bitmask, bit i meaning "reached from source i".
+ * One pass over the edges advances all 64 frontiers with a single OR.
+ *
+ * All-pairs hop counts therefore take ceil(V / 64) batched passes, and the
+ * batches themselves run in parallel.
+ */
+public class BitParallelBfs {
+
+    /**
+     * Hop-count matrix: rows are sources, columns are all graph nodes.
+     */
+    public static class HopMatrix {
+        public int[] sources;           // Source node ids (rows)
+        public int nodeCount;           // Number of columns (every node id)
+        public int[] hops;              // Row-major hop counts, -1 = unreachable
+        public List<String> locations;  // Column id -> location name
+
+        public HopMatrix(int[] sources, int nodeCount, int[] hops, List<String> locations) {
+            this.sources = sources;
+            this.nodeCount = nodeCount;
+            this.hops = hops;
+            this.locations = locations;
+        }
+
+        // Hops from sources[row] to node id column (-1 if unreachable)
+        public int get(int row, int column) {
+            return hops[row * nodeCount + column];
+        }
+    }
+
+    /**
+     * Hop counts between every pair of nodes.
+     */
+    public static HopMatrix allPairs(Graph graph) {
+        CompactGraph compact = graph.toCompact();
+        int[] sources = new int[compact.nodeCount()];
+        for (int i = 0; i < sources.length; i++) sources[i] = i;
+        return fromSources(compact, sources);
+    }
+
+    /**
+     * Hop counts from each given source to every node.
+     */
+    public static HopMatrix fromSources(CompactGraph graph, int[] sources) {
+        int n = graph.nodeCount();
+        int[] hops = new int[sources.length * n];
+        Arrays.fill(hops, -1);
+
+        int batches = (sources.length + 63) / 64;
+        IntStream.range(0, batches).parallel().forEach(b -> {
+            int offset = b * 64;
+            int width = Math.min(64, sources.length - offset);
+            runBatch(graph, sources, offset, width, hops);
+        });
+
+        List<String> locations = new ArrayList<>(n);
+        for (int v = 0; v < n; v++) locations.add(graph.name(v));
+        return new HopMatrix(sources, n, hops, locations);
+    }
+
+    /**
+     * One bit-parallel BFS for sources[offset .. offset + width).
+     */
+    private static void runBatch(CompactGraph graph, int[] sources, int offset, int width, int[] hops) {
+        int n = graph.nodeCount();
+        long[] seen = new long[n];
+        long[] frontier = new long[n];
+        long[] next = new long[n];
+
+        for (int i = 0; i < width; i++) {
+            int s = sources[offset + i];
+            seen[s] |= 1L << i;
+            frontier[s] |= 1L << i;
+            hops[(offset + i) * n + s] = 0;
+        }
+
+        for (int level = 1; ; level++) {
+            boolean advanced = false;
+            for (int u = 0; u < n; u++) {
+                long bits = frontier[u];
+                if (bits == 0) continue;
+                for (int e = graph.firstOut[u]; e < graph.firstOut[u + 1]; e++) {
+                    next[graph.head[e]] |= bits;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                long fresh = next[v] & ~seen[v];
+                next[v] = 0;
+                frontier[v] = fresh;
+                if (fresh == 0) continue;
+                advanced = true;
+                seen[v] |= fresh;
+                while (fresh != 0) {
+                    int i = Long.numberOfTrailingZeros(fresh);
+                    hops[(offset + i) * n + v] = level;
+                    fresh &= fresh - 1;
+                }
+            }
+            if (!advanced) break;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+import java.util.*;
+
+/**
+ * CompactGraph - CSR (compressed sparse row) snapshot of a Graph
+ * ---------------------------------------------------------------
+ * The object graph (Nodes + LinkedList<Edge>) is convenient to build but slow to
+ * search: every step chases pointers and every lookup hashes a Nodes object.
+ * This class flattens one version of a Graph into primitive arrays so the
+ * int-indexed engines (distance tables, isochrones, analytics) can run on it.
+ *
+ * Layout:
+ * - Nodes get dense ids 0..n-1, ordered by Nodes.n then name (stable across rebuilds).
+ * - Outgoing edges of node u are edge ids firstOut[u] .. firstOut[u+1]-1.
+ * - The reverse adjacency (incoming edges) is stored alongside for backward searches.
+ *
+ * Snapshots are immutable; obtain one with Graph.toCompact().
+ */
+public class CompactGraph {
+    final long version;        // Graph version this snapshot was built from
+    final long fingerprint;    // Content hash, stable across processes
+    final Nodes[] nodes;       // Node id -> original node
+    final int[] firstOut;      // Node id -> first outgoing edge id (size n + 1)
+    final int[] head;          // Edge id -> destination node id
+    final int[] tail;          // Edge id -> source node id
+    final double[] weight;     // Edge id -> base weight (distance in meters)
+    final int[] firstIn;       // Node id -> first incoming slot (size n + 1)
+    final int[] inEdge;        // Incoming slot -> forward edge id
+    private final Map<Nodes, Integer> ids;
+    private final Map<String, Integer> idsByName;
+
+    CompactGraph(Collection<Nodes> graphNodes, long version) {
+        this.version = version;
+
+        nodes = graphNodes.toArray(new Nodes[0]);
+        Arrays.sort(nodes, Comparator.comparingInt((Nodes node) -> node.n).thenComparing(node -> node.name));
+
+        int n = nodes.length;
+        ids = new HashMap<>(n * 2);
+        idsByName = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            ids.put(nodes[i], i);
+            idsByName.putIfAbsent(nodes[i].name, i);
+        }
+
+        // Count outgoing edges (only edges whose destination belongs to the graph)
+        firstOut = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            int degree = 0;
+            for (Edge edge : nodes[u].edges) {
+                if (ids.containsKey(edge.destination)) degree++;
+            }
+            firstOut[u + 1] = firstOut[u] + degree;
+        }
+
+        int m = firstOut[n];
+        head = new int[m];
+        tail = new int[m];
+        weight = new double[m];
+        int[] inDegree = new int[n + 1];
+
+        for (int u = 0; u < n; u++) {
+            int e = firstOut[u];
+            for (Edge edge : nodes[u].edges) {
+                Integer v = ids.get(edge.destination);
+                if (v == null) continue;
+                head[e] = v;
+                tail[e] = u;
+                weight[e] = edge.weight;
+                inDegree[v + 1]++;
+                e++;
+            }
+        }
+
+        // Build the reverse adjacency by counting sort on destination
+        firstIn = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            firstIn[v + 1] = firstIn[v] + inDegree[v + 1];
+        }
+        inEdge = new int[m];
+        int[] fill = Arrays.copyOf(firstIn, n);
+        for (int e = 0; e < m; e++) {
+            inEdge[fill[head[e]]++] = e;
+        }
+
+        fingerprint = computeFingerprint();
+    }
+
+    /**
+     * 64-bit content hash of names, edges and weights. Unlike the version counter
+     * (which restarts in every process) it identifies the same graph across runs.
+     */
+    private long computeFingerprint() {
+        long h = 0xCBF29CE484222325L ^ nodes.length;
+        for (Nodes node : nodes) {
+            h = mix(h, node.name.hashCode());
+        }
+        for (int e = 0; e < head.length; e++) {
+            h = mix(h, ((long) tail[e] << 32) | head[e]);
+            h = mix(h, Double.doubleToLongBits(weight[e]));
+        }
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        h ^= value;
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    // Number of nodes in the snapshot
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    // Number of directed edges in the snapshot
+    public int edgeCount() {
+        return head.length;
+    }
+
+    // Graph version the snapshot reflects
+    public long getVersion() {
+        return version;
+    }
+
+    // Content hash of the snapshot (equal for identical graphs, even in another process)
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    // Dense id of a node, or -1 if it is not part of this snapshot
+    public int indexOf(Nodes node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    // Dense id of the (first) node with this exact name, or -1
+    public int indexOf(String name) {
+        Integer id = idsByName.get(name);
+        return id == null ? -1 : id;
+    }
+
+    // Original node for a dense id
+    public Nodes node(int id) {
+        return nodes[id];
+    }
+
+    // Location name for a dense id
+    public String name(int id) {
+        return nodes[id].name;
+    }
+
+    // Source node id of an edge
+    public int edgeSource(int edge) {
+        return tail[edge];
+    }
+
+    // Destination node id of an edge
+    public int edgeTarget(int edge) {
+        return head[edge];
+    }
+
+    // Base weight of an edge
+    public double edgeWeight(int edge) {
+        return weight[edge];
+    }
+
+    /**
+     * Returns the id of the cheapest edge u -> v, or -1 if there is none.
+     */
+    public int findEdge(int u, int v) {
+        int best = -1;
+        for (int e = firstOut[u]; e < firstOut[u + 1]; e++) {
+            if (head[e] == v && (best == -1 || weight[e] < weight[best])) {
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Converts a path of node ids into location names.
+     */
+    public List<String> pathNames(int[] path) {
+        List<String> names = new ArrayList<>(path.length);
+        for (int id : path) {
+            names.add(nodes[id].name);
+        }
+        return names;
+    }
+}
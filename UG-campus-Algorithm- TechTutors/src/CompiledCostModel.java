@@ -0,0 +1,262 @@
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * CompiledCostModel - dense float edge costs per (profile, hour)
+ * ---------------------------------------------------------------
+ * Traffic, weather and accessibility factors live in maps keyed by location
+ * name and are applied to a route only after it has been chosen. Compiling them
+ * once turns every (profile, hour) into a float[] indexed by edge id, so
+ * searches are cost-aware and a query does no string hashing at all.
+ *
+ * Cost of an edge u -> v, in seconds:
+ *     distance x SECONDS_PER_METER x traffic(v, hour) x weather(v) x accessibility(v, profile)
+ * Factors are those of the location the edge leads into. The per-node tables and
+ * nodeCost below are the only definition of this formula: EdgeCostModel builds
+ * its double[] arrays from them too (without weather).
+ *
+ * How it works:
+ * - Each factor source is asked once per location (traffic once per hour),
+ *   which gives small per-node tables.
+ * - Edge arrays are filled from those tables with a plain loop over edge ids.
+ * - SearchSpace.startCompiled reads the arrays directly; floats halve the
+ *   memory of the double[] cost arrays.
+ * - A model is immutable and tied to one graph snapshot. Compile a new one when
+ *   the graph, the live or learned traffic, or the weather changes; cached()
+ *   does that for request paths (RouteOptimizer.findFastestRoute).
+ */
+public class CompiledCostModel {
+    // Profile for walkers without accessibility needs
+    static final String STANDARD = "standard";
+    static final int HOURS = 24;
+    // Single-hour models kept by cached
+    static final int CACHE_CAPACITY = 32;
+
+    // (graph snapshot, profile, hour, traffic and weather versions) -> model; least recently used dropped
+    private static final Map<CacheKey, CompiledCostModel> CACHE = Collections.synchronizedMap(
+        new LinkedHashMap<CacheKey, CompiledCostModel>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CompiledCostModel> eldest) {
+                return size() > CACHE_CAPACITY;
+            }
+        });
+
+    final CompactGraph graph;
+    private final List<String> profiles;
+    private final float[][] costs;            // (profile * HOURS + hour) -> edge costs (null = hour not compiled)
+    public final double compileMillis;
+
+    private CompiledCostModel(CompactGraph graph, List<String> profiles, float[][] costs, double compileMillis) {
+        this.graph = graph;
+        this.profiles = profiles;
+        this.costs = costs;
+        this.compileMillis = compileMillis;
+    }
+
+    /**
+     * Compiles all 24 hours for STANDARD plus the given accessibility types.
+     */
+    public static CompiledCostModel compile(Graph graph, String... accessibilityTypes) {
+        List<String> profiles = new ArrayList<>();
+        profiles.add(STANDARD);
+        profiles.addAll(Arrays.asList(accessibilityTypes));
+        return compile(graph.toCompact(), profiles);
+    }
+
+    /**
+     * Compiles exactly the given profiles.
+     * @param profileNames STANDARD and/or accessibility types (e.g. "wheelchair")
+     * @param hours        Hours of day to compile (all 24 when none are given)
+     */
+    public static CompiledCostModel compile(CompactGraph graph, Collection<String> profileNames, int... hours) {
+        long startTime = System.nanoTime();
+        List<String> profiles = new ArrayList<>();
+        for (String profile : profileNames) {
+            if (!profiles.contains(profile)) profiles.add(profile);
+        }
+        boolean[] compiled = new boolean[HOURS];
+        if (hours.length == 0) {
+            Arrays.fill(compiled, true);
+        }
+        for (int hour : hours) {
+            if (hour < 0 || hour >= HOURS) {
+                throw new IllegalArgumentException("Hour out of range: " + hour);
+            }
+            compiled[hour] = true;
+        }
+
+        // Per-node factor tables, each source asked once per location
+        double[] weather = weatherTable(graph);
+        double[][] traffic = new double[HOURS][];
+        double[][] accessibility = new double[profiles.size()][];
+        for (int h = 0; h < HOURS; h++) {
+            if (compiled[h]) traffic[h] = trafficTable(graph, LocalTime.of(h, 0));
+        }
+        for (int p = 0; p < profiles.size(); p++) {
+            accessibility[p] = accessibilityTable(graph, profiles.get(p));
+        }
+
+        // One array per (profile, hour)
+        int m = graph.edgeCount();
+        float[][] costs = new float[profiles.size() * HOURS][];
+        for (int p = 0; p < profiles.size(); p++) {
+            for (int h = 0; h < HOURS; h++) {
+                if (!compiled[h]) continue;
+                float[] edgeCosts = new float[m];
+                for (int e = 0; e < m; e++) {
+                    int v = graph.head[e];
+                    edgeCosts[e] = (float) (graph.weight[e] * nodeCost(traffic[h][v], weather[v], accessibility[p][v]));
+                }
+                costs[p * HOURS + h] = edgeCosts;
+            }
+        }
+        return new CompiledCostModel(graph, Collections.unmodifiableList(profiles), costs,
+            (System.nanoTime() - startTime) / 1_000_000.0);
+    }
+
+    /**
+     * Model for one profile and hour, shared across queries. It is compiled again
+     * only when the graph snapshot, the traffic factors of that hour
+     * (TrafficSimulator.factorVersion(time)) or the weather change.
+     */
+    public static CompiledCostModel cached(CompactGraph graph, String profile, int hour) {
+        if (hour < 0 || hour >= HOURS) {
+            throw new IllegalArgumentException("Hour out of range: " + hour);
+        }
+        // Versions read first: a change during the compile leaves the entry stale, not wrong
+        CacheKey key = new CacheKey(graph, profile, hour, TrafficSimulator.factorVersion(LocalTime.of(hour, 0)),
+            WeatherIntegration.version());
+        CompiledCostModel model = CACHE.get(key);
+        if (model == null) {
+            model = compile(graph, Collections.singletonList(profile), hour);
+            CACHE.put(key, model);
+        }
+        return model;
+    }
+
+    // Traffic factor of every node at a time of day
+    static double[] trafficTable(CompactGraph graph, LocalTime time) {
+        double[] factors = new double[graph.nodeCount()];
+        for (int v = 0; v < factors.length; v++) {
+            factors[v] = TrafficSimulator.calculateTrafficFactor(graph.name(v), time);
+        }
+        return factors;
+    }
+
+    // Weather factor of every node
+    static double[] weatherTable(CompactGraph graph) {
+        double[] factors = new double[graph.nodeCount()];
+        for (int v = 0; v < factors.length; v++) {
+            factors[v] = WeatherIntegration.calculateWeatherFactor(graph.name(v));
+        }
+        return factors;
+    }
+
+    // Accessibility factor of every node for a profile (1.0 for STANDARD)
+    static double[] accessibilityTable(CompactGraph graph, String profile) {
+        double[] factors = new double[graph.nodeCount()];
+        for (int v = 0; v < factors.length; v++) {
+            factors[v] = STANDARD.equals(profile) ? 1.0 : AccessibilityFeatures.accessibilityTimeFactor(graph.name(v), profile);
+        }
+        return factors;
+    }
+
+    // Seconds per meter of an edge leading into a node with these factors
+    static double nodeCost(double traffic, double weather, double accessibility) {
+        return EdgeCostModel.SECONDS_PER_METER * traffic * weather * accessibility;
+    }
+
+    public List<String> profiles() {
+        return profiles;
+    }
+
+    // Index of a profile for costs(int, int), or -1 if it was not compiled
+    public int profileIndex(String profile) {
+        return profiles.indexOf(profile);
+    }
+
+    public boolean hasHour(int hour) {
+        return hour >= 0 && hour < HOURS && !profiles.isEmpty() && costs[hour] != null;
+    }
+
+    // Whether the model was compiled from the graph's current version
+    public boolean isCurrent(Graph graph) {
+        return graph.getVersion() == this.graph.version;
+    }
+
+    /**
+     * Edge costs in seconds for a profile and hour (shared; do not modify).
+     */
+    public float[] costs(String profile, int hour) {
+        int p = profileIndex(profile);
+        if (p < 0) {
+            throw new IllegalArgumentException("Profile not compiled: " + profile);
+        }
+        return costs(p, hour);
+    }
+
+    public float[] costs(int profile, int hour) {
+        float[] edgeCosts = hour >= 0 && hour < HOURS ? costs[profile * HOURS + hour] : null;
+        if (edgeCosts == null) {
+            throw new IllegalArgumentException("Hour not compiled: " + hour);
+        }
+        return edgeCosts;
+    }
+
+    /**
+     * Fastest route for a profile at a departure time, with time already
+     * including traffic, weather and accessibility. Returns null if there is no
+     * path or a location is unknown.
+     */
+    public SortingAlgorithms.Route route(String start, String end, String profile, LocalTime departureTime) {
+        int s = graph.indexOf(start);
+        int t = graph.indexOf(end);
+        if (s < 0 || t < 0) {
+            return null;
+        }
+        float[] edgeCosts = costs(profile, departureTime.getHour());
+        SearchSpace space = SearchSpace.forCurrentThread(graph);
+        space.startCompiled(edgeCosts, false);
+        space.addSource(s, 0.0);
+        for (int v; (v = space.settleNext()) != -1 && v != t; ) {
+            // Stop once the destination is settled
+        }
+        if (!space.isSettled(t)) {
+            return null;
+        }
+        double distance = 0;
+        for (int v = t, e; (e = space.parentEdge(v)) != -1; v = graph.tail[e]) {
+            distance += graph.weight[e];
+        }
+        return new SortingAlgorithms.Route(graph.pathNames(space.pathTo(t)), distance, space.distance(t), "Compiled Costs");
+    }
+
+    private static final class CacheKey {
+        final CompactGraph graph;         // Compared by identity: one snapshot per graph version
+        final String profile;
+        final int hour;
+        final long trafficVersion;
+        final long weatherVersion;
+
+        CacheKey(CompactGraph graph, String profile, int hour, long trafficVersion, long weatherVersion) {
+            this.graph = graph;
+            this.profile = profile;
+            this.hour = hour;
+            this.trafficVersion = trafficVersion;
+            this.weatherVersion = weatherVersion;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) return false;
+            CacheKey other = (CacheKey) obj;
+            return graph == other.graph && hour == other.hour && trafficVersion == other.trafficVersion
+                && weatherVersion == other.weatherVersion && profile.equals(other.profile);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(graph), profile, hour, trafficVersion, weatherVersion);
+        }
+    }
+}
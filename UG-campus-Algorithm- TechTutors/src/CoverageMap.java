@@ -0,0 +1,316 @@
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * CoverageMap - nearest facility and travel time for every location
+ * ------------------------------------------------------------------
+ * Multi-source shortest paths from a set of facilities (e.g. the "Emergency"
+ * landmarks such as the Fire Station). All facilities are seeded at cost 0 as if
+ * connected to one virtual super-source, so a single Dijkstra pass labels every
+ * node with its nearest facility and travel time.
+ *
+ * Features:
+ * - Two directions: time for a person to reach the nearest facility (search over
+ *   the reversed graph, the default) or time for a responder to reach each node.
+ * - Results are cached against the graph version and refreshed on first use
+ *   after the graph changes.
+ * - Incremental repair: adding/removing a facility or changing edge weights
+ *   only re-labels the affected part of the map instead of recomputing it.
+ * - Threshold queries ("which buildings are over 4 minutes away") are answered
+ *   from a sorted index with a binary search.
+ */
+public class CoverageMap {
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    private final Graph graph;
+    private final boolean fromFacility;                 // true = responders travel out from facilities
+    private final Function<CompactGraph, double[]> costModel;
+    private final Set<String> facilityNames = new LinkedHashSet<>();
+
+    private CompactGraph compact;
+    private double[] costs;
+    private double[] time;              // Node -> travel time to/from nearest facility
+    private int[] nearest;              // Node -> nearest facility node id (-1 if uncovered)
+    private int[] parentEdge;           // Node -> tree edge towards its facility (-1 at facilities)
+    private boolean[] isFacility;
+    private int[] byTime;               // Node ids sorted by time (rebuilt lazily)
+    private long fullRebuilds;
+    private long incrementalUpdates;
+
+    /**
+     * @param graph        Campus graph
+     * @param facilities   Facility location names
+     * @param costModel    Builds per-edge costs for a snapshot (e.g. EdgeCostModel::walkingTimes)
+     * @param fromFacility true for response times out of the facilities, false for time to reach one
+     */
+    public CoverageMap(Graph graph, Collection<String> facilities, Function<CompactGraph, double[]> costModel, boolean fromFacility) {
+        this.graph = graph;
+        this.costModel = costModel;
+        this.fromFacility = fromFacility;
+        this.facilityNames.addAll(facilities);
+    }
+
+    /**
+     * Coverage of the "Emergency" landmarks by walking time (seconds) to the nearest one.
+     */
+    public static CoverageMap emergencyCoverage(Graph graph, List<SearchAlgorithms.Landmark> landmarks) {
+        List<String> facilities = new ArrayList<>();
+        for (SearchAlgorithms.Landmark landmark : SearchAlgorithms.searchByCategory(landmarks, "Emergency")) {
+            facilities.add(landmark.name);
+        }
+        return new CoverageMap(graph, facilities, EdgeCostModel::walkingTimes, false);
+    }
+
+    // Travel time between the location and its nearest facility (infinity if uncovered)
+    public synchronized double travelTime(Nodes node) {
+        ensureCurrent();
+        int v = compact.indexOf(node);
+        return v < 0 ? INF : time[v];
+    }
+
+    // Name of the nearest facility (null if uncovered)
+    public synchronized String nearestFacility(Nodes node) {
+        ensureCurrent();
+        int v = compact.indexOf(node);
+        return v < 0 || nearest[v] < 0 ? null : compact.name(nearest[v]);
+    }
+
+    /**
+     * Locations whose travel time exceeds the threshold (uncovered locations included),
+     * worst first.
+     */
+    public synchronized List<String> locationsBeyond(double threshold) {
+        ensureCurrent();
+        if (byTime == null) {
+            Integer[] order = new Integer[time.length];
+            for (int v = 0; v < order.length; v++) order[v] = v;
+            Arrays.sort(order, (a, b) -> Double.compare(time[a], time[b]));
+            byTime = new int[order.length];
+            for (int i = 0; i < order.length; i++) byTime[i] = order[i];
+        }
+        // First position with time > threshold
+        int lo = 0, hi = byTime.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (time[byTime[mid]] > threshold) hi = mid; else lo = mid + 1;
+        }
+        List<String> result = new ArrayList<>(byTime.length - lo);
+        for (int i = byTime.length - 1; i >= lo; i--) {
+            result.add(compact.name(byTime[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Adds a facility and relabels only the nodes it now serves better.
+     */
+    public synchronized void addFacility(String location) {
+        ensureCurrent();
+        if (!facilityNames.add(location)) return;
+        int f = compact.indexOf(location);
+        if (f < 0 || isFacility[f]) return;
+        isFacility[f] = true;
+        MinHeap heap = new MinHeap(time.length);
+        offer(heap, f, 0.0, f, -1);
+        propagate(heap);
+        incrementalUpdates++;
+    }
+
+    /**
+     * Removes a facility and repairs only the nodes that relied on it.
+     */
+    public synchronized void removeFacility(String location) {
+        ensureCurrent();
+        if (!facilityNames.remove(location)) return;
+        int f = compact.indexOf(location);
+        if (f < 0 || !isFacility[f]) return;
+        isFacility[f] = false;
+        boolean[] affected = new boolean[time.length];
+        for (int v = 0; v < time.length; v++) {
+            affected[v] = nearest[v] == f;
+        }
+        repair(affected);
+        incrementalUpdates++;
+    }
+
+    // Number of full recomputations so far
+    public synchronized long getFullRebuilds() {
+        return fullRebuilds;
+    }
+
+    // Number of incremental repairs so far
+    public synchronized long getIncrementalUpdates() {
+        return incrementalUpdates;
+    }
+
+    /**
+     * Brings the map up to date with the graph: nothing if the version is unchanged,
+     * an incremental repair if only edge weights changed, a full pass otherwise.
+     */
+    private void ensureCurrent() {
+        CompactGraph latest = graph.toCompact();
+        if (compact == latest) {
+            return;
+        }
+        double[] latestCosts = costModel.apply(latest);
+        if (compact != null && sameTopology(compact, latest)) {
+            double[] oldCosts = costs;
+            compact = latest;
+            costs = latestCosts;
+            applyCostChanges(oldCosts);
+            incrementalUpdates++;
+        } else {
+            compact = latest;
+            costs = latestCosts;
+            recomputeAll();
+            fullRebuilds++;
+        }
+        byTime = null;
+    }
+
+    private void recomputeAll() {
+        int n = compact.nodeCount();
+        time = new double[n];
+        nearest = new int[n];
+        parentEdge = new int[n];
+        isFacility = new boolean[n];
+        Arrays.fill(time, INF);
+        Arrays.fill(nearest, -1);
+        Arrays.fill(parentEdge, -1);
+
+        // Virtual super-source: every facility starts at cost 0
+        MinHeap heap = new MinHeap(n);
+        for (String name : facilityNames) {
+            int f = compact.indexOf(name);
+            if (f >= 0) {
+                isFacility[f] = true;
+                offer(heap, f, 0.0, f, -1);
+            }
+        }
+        propagate(heap);
+    }
+
+    private static boolean sameTopology(CompactGraph a, CompactGraph b) {
+        if (a.nodeCount() != b.nodeCount() || a.edgeCount() != b.edgeCount()) return false;
+        for (int v = 0; v < a.nodeCount(); v++) {
+            if (a.node(v) != b.node(v)) return false;
+        }
+        return Arrays.equals(a.firstOut, b.firstOut) && Arrays.equals(a.head, b.head);
+    }
+
+    /**
+     * Increases on tree edges invalidate the subtree below the edge, which is
+     * repaired first; decreases then push improved labels outwards.
+     */
+    private void applyCostChanges(double[] oldCosts) {
+        int n = time.length;
+        boolean[] affected = null;
+        int[] firstChild = null;
+        int[] nextSibling = null;
+
+        for (int e = 0; e < costs.length; e++) {
+            int to = fromFacility ? compact.head[e] : compact.tail[e];  // Farther from the facility
+            if (costs[e] <= oldCosts[e] || parentEdge[to] != e) continue;
+            if (affected == null) {
+                // Child lists of the current shortest-path forest
+                affected = new boolean[n];
+                firstChild = new int[n];
+                nextSibling = new int[n];
+                Arrays.fill(firstChild, -1);
+                for (int v = 0; v < n; v++) {
+                    if (parentEdge[v] < 0) continue;
+                    int parent = fromFacility ? compact.tail[parentEdge[v]] : compact.head[parentEdge[v]];
+                    nextSibling[v] = firstChild[parent];
+                    firstChild[parent] = v;
+                }
+            }
+            Deque<Integer> stack = new ArrayDeque<>();
+            stack.push(to);
+            while (!stack.isEmpty()) {
+                int v = stack.pop();
+                if (affected[v]) continue;
+                affected[v] = true;
+                for (int c = firstChild[v]; c != -1; c = nextSibling[c]) stack.push(c);
+            }
+        }
+        if (affected != null) {
+            repair(affected);
+        }
+
+        MinHeap heap = new MinHeap(n);
+        for (int e = 0; e < costs.length; e++) {
+            if (costs[e] >= oldCosts[e]) continue;
+            int from = fromFacility ? compact.tail[e] : compact.head[e];  // Closer to the facility
+            int to = fromFacility ? compact.head[e] : compact.tail[e];
+            if (time[from] + costs[e] < time[to]) {
+                offer(heap, to, time[from] + costs[e], nearest[from], e);
+            }
+        }
+        propagate(heap);
+    }
+
+    /**
+     * Resets affected nodes and relabels them from their unaffected neighbours.
+     * Unaffected labels stay exact, so only the affected region is searched.
+     */
+    private void repair(boolean[] affected) {
+        MinHeap heap = new MinHeap(time.length);
+        for (int v = 0; v < time.length; v++) {
+            if (!affected[v]) continue;
+            time[v] = INF;
+            nearest[v] = -1;
+            parentEdge[v] = -1;
+        }
+        for (int v = 0; v < time.length; v++) {
+            if (!affected[v]) continue;
+            if (isFacility[v]) {
+                offer(heap, v, 0.0, v, -1);
+                continue;
+            }
+            // Neighbours on the facility side of v
+            if (fromFacility) {
+                for (int slot = compact.firstIn[v]; slot < compact.firstIn[v + 1]; slot++) {
+                    int e = compact.inEdge[slot];
+                    int u = compact.tail[e];
+                    if (!affected[u] && time[u] + costs[e] < time[v]) offer(heap, v, time[u] + costs[e], nearest[u], e);
+                }
+            } else {
+                for (int e = compact.firstOut[v]; e < compact.firstOut[v + 1]; e++) {
+                    int u = compact.head[e];
+                    if (!affected[u] && time[u] + costs[e] < time[v]) offer(heap, v, time[u] + costs[e], nearest[u], e);
+                }
+            }
+        }
+        propagate(heap);
+    }
+
+    private void offer(MinHeap heap, int v, double t, int facility, int edge) {
+        if (t < time[v] || (edge == -1 && t == time[v])) {
+            time[v] = t;
+            nearest[v] = facility;
+            parentEdge[v] = edge;
+            heap.insertOrDecrease(v, t);
+        }
+    }
+
+    // Dijkstra over the label arrays: only strictly better labels are pushed
+    private void propagate(MinHeap heap) {
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            double tu = time[u];
+            if (fromFacility) {
+                for (int e = compact.firstOut[u]; e < compact.firstOut[u + 1]; e++) {
+                    double t = tu + costs[e];
+                    if (t < time[compact.head[e]]) offer(heap, compact.head[e], t, nearest[u], e);
+                }
+            } else {
+                for (int slot = compact.firstIn[u]; slot < compact.firstIn[u + 1]; slot++) {
+                    int e = compact.inEdge[slot];
+                    double t = tu + costs[e];
+                    if (t < time[compact.tail[e]]) offer(heap, compact.tail[e], t, nearest[u], e);
+                }
+            }
+        }
+        byTime = null;
+    }
+}
@@ -0,0 +1,413 @@
+import java.time.LocalTime;
+import java.util.*;
+import java.util.function.BiPredicate;
+
+/**
+ * CrowdSimulation - agent-based pedestrian simulation over a teaching day
+ * ------------------------------------------------------------------------
+ * Every student is an agent that walks its timetable trips along shortest
+ * routes. Walking speed on a walkway drops as the walkway fills up, so crowds
+ * at lecture changeover actually slow everyone down.
+ *
+ * How it works:
+ * - Time advances in fixed steps (STEP_SECONDS). Each step has two phases:
+ *   1. Move: every agent advances using the walkway speeds computed from the
+ *      occupancy at the start of the step. Agents only read that snapshot and
+ *      write their own state, so the result does not depend on thread count or
+ *      scheduling.
+ *   2. Count: agents add themselves to the occupancy of their walkway, summed
+ *      through ParallelPartitions.
+ * - Speed follows Weidmann's fundamental diagram on a walkway of
+ *   WALKWAY_WIDTH meters, from 2 m/s when empty down to MIN_SPEED when jammed.
+ * - Routes are computed once per distinct origin (one search each) and shared.
+ *
+ * Output: per walkway and per SAMPLE_SECONDS interval, the mean travel time
+ * factor (free speed / actual speed) and occupancy. These feed back into routing
+ * as per-edge cost arrays or as a TrafficProfile.
+ */
+public class CrowdSimulation {
+    static final int STEP_SECONDS = 5;
+    static final int SAMPLE_SECONDS = 300;
+    static final double WALKWAY_WIDTH = 4.0;          // Meters
+    static final double FREE_SPEED = 1.0 / EdgeCostModel.SECONDS_PER_METER;
+    static final double JAM_DENSITY = 5.4;            // Pedestrians per square meter
+    static final double MIN_SPEED = 0.1;              // Meters per second (jammed crowds still creep)
+    private static final double WEIDMANN_GAMMA = 1.913;
+
+    /**
+     * One timetable trip of one agent.
+     */
+    public static class Trip {
+        public int agent;                 // Agent id (0 .. agents - 1)
+        public LocalTime departure;       // When the agent wants to leave
+        public String from;               // Start location
+        public String to;                 // Destination
+
+        public Trip(int agent, LocalTime departure, String from, String to) {
+            this.agent = agent;
+            this.departure = departure;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Congestion time series and trip statistics of one simulated day.
+     */
+    public static class SimulationResult {
+        final CompactGraph graph;
+        public int agents;                // Agents simulated
+        public int trips;                 // Trips in the timetable
+        public int completedTrips;        // Trips that reached their destination before the end
+        public int unroutableTrips;       // Trips with no path (skipped)
+        public double meanTripSeconds;    // Mean duration of completed trips, including delays
+        public double meanFreeFlowSeconds;// Mean duration the same trips take on empty walkways
+        public int startSecond;           // Clock time of the first interval (seconds since midnight)
+        public int intervals;             // Number of SAMPLE_SECONDS intervals
+        public float[] edgeFactors;       // (edge * intervals + i) -> mean travel time factor
+        public float[] edgeOccupancy;     // (edge * intervals + i) -> mean agents on the walkway
+        public double elapsedMillis;      // Wall-clock time of the simulation
+
+        SimulationResult(CompactGraph graph, int startSecond, int intervals) {
+            this.graph = graph;
+            this.startSecond = startSecond;
+            this.intervals = intervals;
+            this.edgeFactors = new float[graph.edgeCount() * intervals];
+            this.edgeOccupancy = new float[graph.edgeCount() * intervals];
+        }
+
+        // Interval covering a clock time, or -1 outside the simulated period
+        public int intervalAt(LocalTime time) {
+            int i = Math.floorDiv(time.toSecondOfDay() - startSecond, SAMPLE_SECONDS);
+            return i >= 0 && i < intervals ? i : -1;
+        }
+
+        // Simulated travel time factor of an edge at a clock time (1.0 outside the period)
+        public double factor(int edge, LocalTime time) {
+            int i = intervalAt(time);
+            return i < 0 ? 1.0 : edgeFactors[edge * intervals + i];
+        }
+
+        /**
+         * Edge costs in seconds with the simulated crowding at a time, for the
+         * CompactGraph engines (SearchSpace, Isochrone, DistanceTable, ...).
+         */
+        public double[] travelTimes(LocalTime time) {
+            double[] costs = new double[graph.edgeCount()];
+            for (int e = 0; e < costs.length; e++) {
+                costs[e] = graph.weight[e] * EdgeCostModel.SECONDS_PER_METER * factor(e, time);
+            }
+            return costs;
+        }
+
+        /**
+         * Hourly per-location factors (mean over the walkways leading into each
+         * location) for TimeDependentRouting and ProfileSearch. Hours outside the
+         * simulated period use 1.0.
+         */
+        public TrafficProfile toTrafficProfile() {
+            int n = graph.nodeCount();
+            double[] sums = new double[n * TrafficProfile.HOURS];
+            int[] samples = new int[n * TrafficProfile.HOURS];
+            for (int e = 0; e < graph.edgeCount(); e++) {
+                for (int i = 0; i < intervals; i++) {
+                    int hour = Math.floorMod(startSecond + i * SAMPLE_SECONDS, TrafficProfile.DAY_SECONDS) / 3600;
+                    int cell = graph.head[e] * TrafficProfile.HOURS + hour;
+                    sums[cell] += edgeFactors[e * intervals + i];
+                    samples[cell]++;
+                }
+            }
+            float[] factors = new float[sums.length];
+            for (int cell = 0; cell < factors.length; cell++) {
+                factors[cell] = samples[cell] == 0 ? 1f : (float) (sums[cell] / samples[cell]);
+            }
+            return new TrafficProfile(graph, factors);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d agents, %d/%d trips completed (%d unroutable), mean trip %.1fs vs %.1fs free-flow, %.0fms",
+                agents, completedTrips, trips, unroutableTrips, meanTripSeconds, meanFreeFlowSeconds, elapsedMillis);
+        }
+    }
+
+    /**
+     * Simulates the timetable between start and end.
+     */
+    public static SimulationResult simulate(Graph graph, List<Trip> timetable, LocalTime start, LocalTime end) {
+        return simulate(graph.toCompact(), timetable, start, end);
+    }
+
+    public static SimulationResult simulate(CompactGraph graph, List<Trip> timetable, LocalTime start, LocalTime end) {
+        long startTime = System.nanoTime();
+        int startSecond = start.toSecondOfDay();
+        int steps = Math.max(0, end.toSecondOfDay() - startSecond) / STEP_SECONDS;
+        int intervals = (steps * STEP_SECONDS + SAMPLE_SECONDS - 1) / SAMPLE_SECONDS;
+        int m = graph.edgeCount();
+
+        // Trips sorted by agent, then departure; each agent walks its own trips in order
+        List<Trip> trips = new ArrayList<>(timetable);
+        trips.sort(Comparator.<Trip>comparingInt(t -> t.agent).thenComparing(t -> t.departure));
+        int agents = trips.stream().mapToInt(t -> t.agent + 1).max().orElse(0);
+        int[] firstTrip = new int[agents + 1];
+        for (Trip trip : trips) firstTrip[trip.agent + 1]++;
+        for (int a = 0; a < agents; a++) firstTrip[a + 1] += firstTrip[a];
+
+        // Routes as edge lists, one search per distinct origin
+        int[] tripFrom = new int[trips.size()];
+        int[] tripTo = new int[trips.size()];
+        int[] tripDeparture = new int[trips.size()];
+        for (int t = 0; t < trips.size(); t++) {
+            Trip trip = trips.get(t);
+            tripFrom[t] = graph.indexOf(trip.from);
+            tripTo[t] = graph.indexOf(trip.to);
+            tripDeparture[t] = trip.departure.toSecondOfDay();
+        }
+        Routes routes = new Routes();
+        int[] tripRoute = routes.resolve(graph, tripFrom, tripTo);
+        int unroutable = 0;
+        for (int route : tripRoute) {
+            if (route < 0) unroutable++;
+        }
+
+        // Agent state
+        int[] nextTrip = new int[agents];          // Trip to start next (index into trips)
+        int[] walkingTrip = new int[agents];       // Trip in progress (-1 = idle)
+        int[] routeStep = new int[agents];         // Position in the route's edge list
+        int[] currentEdge = new int[agents];       // Edge being walked (-1 = idle)
+        double[] offset = new double[agents];      // Meters walked along the current edge
+        double[] tripArrival = new double[trips.size()];
+        double[] tripStart = new double[trips.size()];
+        Arrays.fill(walkingTrip, -1);
+        Arrays.fill(currentEdge, -1);
+        Arrays.fill(tripArrival, Double.NaN);
+        for (int a = 0; a < agents; a++) nextTrip[a] = firstTrip[a];
+
+        SimulationResult result = new SimulationResult(graph, startSecond, intervals);
+        double[] speed = new double[m];
+        double[] occupancy = new double[m];
+        ParallelPartitions counter = new ParallelPartitions(agents, m);
+
+        for (int step = 0; step < steps; step++) {
+            int now = startSecond + step * STEP_SECONDS;
+            int interval = step * STEP_SECONDS / SAMPLE_SECONDS;
+            for (int e = 0; e < m; e++) {
+                speed[e] = speed(occupancy[e], graph.weight[e]);
+                result.edgeFactors[e * intervals + interval] += (float) (FREE_SPEED / speed[e]);
+                result.edgeOccupancy[e * intervals + interval] += occupancy[e];
+            }
+
+            // Phase 1 and 2 per partition: move agents against the snapshot, then count
+            counter.sumInto(occupancy, (from, to, counts) -> {
+                for (int a = from; a < to; a++) {
+                    if (currentEdge[a] < 0) {
+                        // Idle: start the next routable trip once it is due
+                        while (nextTrip[a] < firstTrip[a + 1] && tripRoute[nextTrip[a]] < 0) nextTrip[a]++;
+                        if (nextTrip[a] >= firstTrip[a + 1] || tripDeparture[nextTrip[a]] > now) continue;
+                        int t = nextTrip[a]++;
+                        walkingTrip[a] = t;
+                        tripStart[t] = now;
+                        routeStep[a] = 0;
+                        offset[a] = 0;
+                        currentEdge[a] = routes.edge(tripRoute[t], 0);
+                        if (currentEdge[a] < 0) { // Origin equals destination
+                            tripArrival[t] = now;
+                            walkingTrip[a] = -1;
+                            continue;
+                        }
+                    }
+                    move(a, now, graph, routes, speed, tripRoute, walkingTrip, routeStep, currentEdge, offset, tripArrival);
+                    if (currentEdge[a] >= 0) counts[currentEdge[a]]++;
+                }
+            });
+        }
+
+        // Interval sums -> means
+        for (int i = 0; i < intervals; i++) {
+            int stepsInInterval = Math.min(SAMPLE_SECONDS, steps * STEP_SECONDS - i * SAMPLE_SECONDS) / STEP_SECONDS;
+            for (int e = 0; e < m; e++) {
+                result.edgeFactors[e * intervals + i] /= stepsInInterval;
+                result.edgeOccupancy[e * intervals + i] /= stepsInInterval;
+            }
+        }
+
+        double tripSeconds = 0, freeSeconds = 0;
+        int completed = 0;
+        for (int t = 0; t < trips.size(); t++) {
+            if (Double.isNaN(tripArrival[t])) continue;
+            completed++;
+            tripSeconds += tripArrival[t] - tripStart[t];
+            freeSeconds += routes.length(tripRoute[t]) / FREE_SPEED;
+        }
+        result.agents = agents;
+        result.trips = trips.size();
+        result.completedTrips = completed;
+        result.unroutableTrips = unroutable;
+        result.meanTripSeconds = completed == 0 ? 0 : tripSeconds / completed;
+        result.meanFreeFlowSeconds = completed == 0 ? 0 : freeSeconds / completed;
+        result.elapsedMillis = (System.nanoTime() - startTime) / 1_000_000.0;
+        return result;
+    }
+
+    // Advances one walking agent by one step, crossing into later edges of its route as needed
+    private static void move(int a, int now, CompactGraph graph, Routes routes, double[] speed, int[] tripRoute,
+        int[] walkingTrip, int[] routeStep, int[] currentEdge, double[] offset, double[] tripArrival) {
+        double remaining = STEP_SECONDS;
+        while (remaining > 0) {
+            int e = currentEdge[a];
+            double v = speed[e];
+            double left = graph.weight[e] - offset[a];
+            if (left > v * remaining) {
+                offset[a] += v * remaining;
+                return;
+            }
+            remaining -= left / v;
+            int route = tripRoute[walkingTrip[a]];
+            int next = routes.edge(route, ++routeStep[a]);
+            if (next < 0) {
+                tripArrival[walkingTrip[a]] = now + STEP_SECONDS - remaining;
+                walkingTrip[a] = -1;
+                currentEdge[a] = -1;
+                return;
+            }
+            currentEdge[a] = next;
+            offset[a] = 0;
+        }
+    }
+
+    /**
+     * Walking speed (m/s) on a walkway with the given number of people on it,
+     * following Weidmann's speed-density relation.
+     */
+    static double speed(double people, double length) {
+        if (people == 0 || length <= 0) {
+            return FREE_SPEED;
+        }
+        double density = people / (length * WALKWAY_WIDTH);
+        if (density >= JAM_DENSITY) {
+            return MIN_SPEED;
+        }
+        double v = FREE_SPEED * (1 - Math.exp(-WEIDMANN_GAMMA * (1 / density - 1 / JAM_DENSITY)));
+        return Math.max(MIN_SPEED, v);
+    }
+
+    /**
+     * A synthetic teaching day: each agent lives in a hall, attends lectures in
+     * academic buildings between 08:00 and 17:00 (leaving a few minutes before
+     * the hour), goes for lunch around noon and walks home after the last lecture.
+     * Only trips that have a path are generated (walkways may be one-way).
+     */
+    public static List<Trip> teachingDay(Graph graph, int agents, long seed) {
+        CompactGraph compact = graph.toCompact();
+        List<String> halls = new ArrayList<>();
+        List<String> buildings = new ArrayList<>();
+        for (int v = 0; v < compact.nodeCount(); v++) {
+            String name = compact.name(v);
+            (name.contains("Hall") ? halls : buildings).add(name);
+        }
+        if (halls.isEmpty()) halls = buildings;
+        String lunch = compact.indexOf("Bush Canteen") >= 0 ? "Bush Canteen" : buildings.get(0);
+
+        Map<String, BitSet> reachable = new HashMap<>();
+        SearchSpace space = new SearchSpace(compact);
+        BiPredicate<String, String> hasPath = (from, to) -> reachable.computeIfAbsent(from, origin -> {
+            BitSet settled = new BitSet(compact.nodeCount());
+            space.start(null, false);
+            space.addSource(compact.indexOf(origin), 0.0);
+            for (int v; (v = space.settleNext()) != -1; ) settled.set(v);
+            return settled;
+        }).get(compact.indexOf(to));
+
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Trip> trips = new ArrayList<>();
+        for (int a = 0; a < agents; a++) {
+            String home = halls.get(random.nextInt(halls.size()));
+            String at = home;
+            int lastHour = -1;
+            for (int hour = 8; hour <= 17; hour++) {
+                String target;
+                if (hour == 12 && random.nextInt(2) == 0) {
+                    target = lunch;
+                } else if (random.nextInt(100) < 55) {
+                    target = buildings.get(random.nextInt(buildings.size()));
+                } else {
+                    continue;
+                }
+                if (target.equals(at) || !hasPath.test(at, target)) continue;
+                LocalTime leave = LocalTime.of(hour - 1, 40).plusSeconds(random.nextInt(15 * 60));
+                trips.add(new Trip(a, leave, at, target));
+                at = target;
+                lastHour = hour;
+            }
+            if (lastHour >= 0 && !at.equals(home) && hasPath.test(at, home)) {
+                trips.add(new Trip(a, LocalTime.of(lastHour, 50).plusSeconds(random.nextInt(20 * 60)), at, home));
+            }
+        }
+        return trips;
+    }
+
+    // Shortest routes as flat edge lists, shared by all agents
+    private static final class Routes {
+        private int[] edges = new int[64];
+        private int[] starts = new int[16];       // Route id -> first position in edges (starts[count] = end)
+        private double[] lengths = new double[16];
+        private int count;
+
+        /**
+         * Route ids for origin-destination pairs (-1 where there is no path).
+         * Pairs are grouped by origin so each origin needs one search.
+         */
+        int[] resolve(CompactGraph graph, int[] from, int[] to) {
+            int[] ids = new int[from.length];
+            Integer[] order = new Integer[from.length];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparingInt(i -> from[i]));
+
+            SearchSpace tree = new SearchSpace(graph);
+            Map<Integer, Integer> byDestination = new HashMap<>();
+            for (int k = 0; k < order.length; k++) {
+                int i = order[k];
+                if (from[i] < 0 || to[i] < 0) {
+                    ids[i] = -1;
+                    continue;
+                }
+                if (k == 0 || from[order[k - 1]] != from[i]) {
+                    tree.start(null, false);
+                    tree.addSource(from[i], 0.0);
+                    while (tree.settleNext() != -1) { }
+                    byDestination.clear();
+                }
+                ids[i] = byDestination.computeIfAbsent(to[i], target -> tree.isSettled(target) ? add(tree, target) : -1);
+            }
+            return ids;
+        }
+
+        private int add(SearchSpace tree, int target) {
+            int[] path = tree.pathTo(target);
+            if (count + 2 > starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+                lengths = Arrays.copyOf(lengths, lengths.length * 2);
+            }
+            int base = starts[count];
+            if (base + path.length > edges.length) {
+                edges = Arrays.copyOf(edges, Math.max(edges.length * 2, base + path.length));
+            }
+            for (int i = 1; i < path.length; i++) {
+                edges[base + i - 1] = tree.parentEdge(path[i]);
+            }
+            lengths[count] = tree.distance(target);
+            starts[++count] = base + path.length - 1;
+            return count - 1;
+        }
+
+        // Edge at a position of a route, or -1 past its end
+        int edge(int route, int position) {
+            int index = starts[route] + position;
+            return index < starts[route + 1] ? edges[index] : -1;
+        }
+
+        double length(int route) {
+            return lengths[route];
+        }
+    }
+}
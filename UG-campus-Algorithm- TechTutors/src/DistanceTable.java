@@ -0,0 +1,115 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * DistanceTable - many-to-many shortest distance tables
+ * ------------------------------------------------------
+ * Computes an S x T table of shortest distances (e.g. every dorm entrance to every
+ * lecture hall) without S x T separate Graph.shortestPath calls or a full
+ * Floyd-Warshall over the whole campus.
+ *
+ * How it works:
+ * - The table is filled by one-to-many Dijkstra searches on the CompactGraph.
+ *   Each search serves a whole row (or column) and stops as soon as every
+ *   target of that row has been settled.
+ * - If there are fewer targets than sources, the searches run backward from
+ *   the targets over the reverse adjacency instead, so the number of searches
+ *   is always min(S, T).
+ * - Rows are processed in parallel, each worker reusing its own SearchSpace.
+ *
+ * The result is a flat row-major double[] (infinity = unreachable).
+ */
+public class DistanceTable {
+
+    /**
+     * Result of a many-to-many computation.
+     */
+    public static class TableResult {
+        public int[] sources;        // Source node ids (rows)
+        public int[] targets;        // Target node ids (columns)
+        public double[] distances;   // Row-major distances: distances[i * targets.length + j]
+        public int searches;         // Number of one-to-many searches performed
+        public long settledNodes;    // Total nodes settled across all searches
+
+        public TableResult(int[] sources, int[] targets, double[] distances, int searches, long settledNodes) {
+            this.sources = sources;
+            this.targets = targets;
+            this.distances = distances;
+            this.searches = searches;
+            this.settledNodes = settledNodes;
+        }
+
+        // Distance from sources[i] to targets[j]
+        public double get(int i, int j) {
+            return distances[i * targets.length + j];
+        }
+    }
+
+    /**
+     * Computes the table for Nodes objects using base edge weights.
+     */
+    public static TableResult compute(Graph graph, List<Nodes> sources, List<Nodes> targets) {
+        CompactGraph compact = graph.toCompact();
+        return compute(compact, toIds(compact, sources), toIds(compact, targets), null);
+    }
+
+    /**
+     * Computes the S x T table on a CompactGraph.
+     * @param costs Per-edge costs (null = base weights)
+     */
+    public static TableResult compute(CompactGraph graph, int[] sources, int[] targets, double[] costs) {
+        boolean backward = targets.length < sources.length;
+        int[] origins = backward ? targets : sources;
+        int[] goals = backward ? sources : targets;
+        double[] distances = new double[sources.length * targets.length];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+
+        // Node -> slots in goals (a node may appear more than once)
+        int[] firstSlot = new int[graph.nodeCount()];
+        int[] nextSlot = new int[goals.length];
+        Arrays.fill(firstSlot, -1);
+        int distinctGoals = 0;
+        for (int j = goals.length - 1; j >= 0; j--) {
+            if (firstSlot[goals[j]] == -1) distinctGoals++;
+            nextSlot[j] = firstSlot[goals[j]];
+            firstSlot[goals[j]] = j;
+        }
+        final int goalCount = distinctGoals;
+
+        ThreadLocal<SearchSpace> spaces = ThreadLocal.withInitial(() -> new SearchSpace(graph));
+        long settled = IntStream.range(0, origins.length).parallel().mapToLong(i -> {
+            SearchSpace space = spaces.get();
+            space.start(costs, backward);
+            space.addSource(origins[i], 0.0);
+
+            int remaining = goalCount;
+            int v;
+            while (remaining > 0 && (v = space.settleNext()) != -1) {
+                if (firstSlot[v] == -1) continue;
+                double d = space.distance(v);
+                for (int j = firstSlot[v]; j != -1; j = nextSlot[j]) {
+                    // Backward searches fill a column of the table
+                    distances[backward ? j * targets.length + i : i * targets.length + j] = d;
+                }
+                remaining--;
+            }
+            return space.settledCount();
+        }).sum();
+
+        return new TableResult(sources, targets, distances, origins.length, settled);
+    }
+
+    /**
+     * Maps nodes to their CompactGraph ids (nodes outside the graph are rejected).
+     */
+    static int[] toIds(CompactGraph graph, List<Nodes> nodes) {
+        int[] ids = new int[nodes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.indexOf(nodes.get(i));
+            if (ids[i] < 0) {
+                throw new IllegalArgumentException("Node not in graph: " + nodes.get(i).name);
+            }
+        }
+        return ids;
+    }
+}
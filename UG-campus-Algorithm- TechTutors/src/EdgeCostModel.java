@@ -0,0 +1,125 @@
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * EdgeCostModel - per-edge cost arrays for the CompactGraph engines
+ * -------------------------------------------------------------------
+ * The int-indexed engines take a double[] cost per edge id. This class builds
+ * those arrays from the existing factor sources so searches are cost-aware
+ * instead of adjusting a route after it has been chosen.
+ *
+ * Cost models:
+ * - Distance: the base edge weight in meters.
+ * - Walking time: distance / 2 seconds (same convention as SortingAlgorithms.Route).
+ * - Travel time: walking time scaled by the TrafficSimulator factor at a given
+ *   departure time and/or the AccessibilityFeatures factor for a user type.
+ *
+ * Location factors are applied to the location an edge leads into, and are
+ * looked up once per node rather than once per edge. The node tables and the
+ * cost formula are CompiledCostModel's, which builds the same costs (plus
+ * weather) as float arrays per hour for repeated queries.
+ */
+public class EdgeCostModel {
+    // Seconds needed per meter of walking (Graph.shortestPath reports time as distance / 2)
+    static final double SECONDS_PER_METER = 0.5;
+    // Travel-time arrays kept by cachedTravelTimes
+    static final int CACHE_CAPACITY = 32;
+
+    // (graph snapshot, hour, live, accessibility type, factor version) -> travel times; least recently used dropped
+    private static final Map<CacheKey, double[]> CACHE = Collections.synchronizedMap(
+        new LinkedHashMap<CacheKey, double[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, double[]> eldest) {
+                return size() > CACHE_CAPACITY;
+            }
+        });
+
+    /**
+     * Edge costs in meters (a copy of the base weights).
+     */
+    public static double[] distances(CompactGraph graph) {
+        return graph.weight.clone();
+    }
+
+    /**
+     * Edge costs in seconds at normal walking speed.
+     */
+    public static double[] walkingTimes(CompactGraph graph) {
+        return travelTimes(graph, null, null);
+    }
+
+    /**
+     * Edge costs in seconds adjusted for traffic and accessibility.
+     * @param departureTime     Time used for traffic factors (null = no traffic adjustment)
+     * @param accessibilityType e.g. "wheelchair" or "elderly" (null = no accessibility adjustment)
+     */
+    public static double[] travelTimes(CompactGraph graph, LocalTime departureTime, String accessibilityType) {
+        double[] traffic = departureTime == null ? null : CompiledCostModel.trafficTable(graph, departureTime);
+        double[] accessibility = accessibilityType == null ? null : CompiledCostModel.accessibilityTable(graph, accessibilityType);
+        double[] nodeFactors = new double[graph.nodeCount()];
+        for (int v = 0; v < nodeFactors.length; v++) {
+            nodeFactors[v] = CompiledCostModel.nodeCost(traffic == null ? 1.0 : traffic[v], 1.0,
+                accessibility == null ? 1.0 : accessibility[v]);
+        }
+        return scaleByDestination(graph, nodeFactors);
+    }
+
+    /**
+     * As travelTimes, but shared across queries: the array is built once per
+     * graph snapshot, hour, accessibility type and traffic state (do not modify it).
+     * Traffic factors only change by hour, or when a factor source changes
+     * (TrafficSimulator.factorVersion), so queries after the first skip the
+     * O(V + E) build.
+     */
+    public static double[] cachedTravelTimes(CompactGraph graph, LocalTime departureTime, String accessibilityType) {
+        CacheKey key = new CacheKey(graph, departureTime == null ? -1 : departureTime.getHour(),
+            departureTime != null && TrafficSimulator.usesLiveTraffic(departureTime), accessibilityType,
+            TrafficSimulator.factorVersion());
+        double[] costs = CACHE.get(key);
+        if (costs == null) {
+            costs = travelTimes(graph, departureTime, accessibilityType);
+            CACHE.put(key, costs);
+        }
+        return costs;
+    }
+
+    /**
+     * Multiplies each edge weight by the factor of the node it leads into.
+     */
+    static double[] scaleByDestination(CompactGraph graph, double[] nodeFactors) {
+        double[] costs = new double[graph.edgeCount()];
+        for (int e = 0; e < costs.length; e++) {
+            costs[e] = graph.weight[e] * nodeFactors[graph.head[e]];
+        }
+        return costs;
+    }
+
+    private static final class CacheKey {
+        final CompactGraph graph;         // Compared by identity: one snapshot per graph version
+        final int hour;
+        final boolean live;
+        final String accessibilityType;
+        final long factorVersion;
+
+        CacheKey(CompactGraph graph, int hour, boolean live, String accessibilityType, long factorVersion) {
+            this.graph = graph;
+            this.hour = hour;
+            this.live = live;
+            this.accessibilityType = accessibilityType;
+            this.factorVersion = factorVersion;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) return false;
+            CacheKey other = (CacheKey) obj;
+            return graph == other.graph && hour == other.hour && live == other.live
+                && factorVersion == other.factorVersion && Objects.equals(accessibilityType, other.accessibilityType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(graph), hour, live, accessibilityType, factorVersion);
+        }
+    }
+}
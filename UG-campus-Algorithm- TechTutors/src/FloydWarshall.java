@@ -9,6 +9,7 @@ import java.util.*;
  * Features:
  * - Compute single shortest path between a given start and end node.
  * - Compute all shortest paths between all pairs of nodes.
+ * - Compute all-pairs hop counts (fewest junctions) with bit-parallel BFS.
  */
 public class FloydWarshall {
     // Represent infinity (unreachable path distance)
@@ -36,8 +37,17 @@ public class FloydWarshall {
      * between a given start node and end node.
      */
     public static ShortestPathResult floydWarshall(Graph graph, Nodes start, Nodes end) {
+        return floydWarshall(graph, start, end, null);
+    }
+
+    /**
+     * Floyd-Warshall that records phase timings, each intermediate node (as SETTLE)
+     * and every improved pair (as RELAX) into the trace (explain mode; null = off).
+     */
+    public static ShortestPathResult floydWarshall(Graph graph, Nodes start, Nodes end, SearchTrace trace) {
         List<Nodes> nodesList = new ArrayList<>(graph.getNodes());
         int n = nodesList.size();
+        if (trace != null) trace.beginPhase("initialize");
         
         // Initialize distance and next matrices
         double[][] distances = new double[n][n];
@@ -59,17 +69,32 @@ public class FloydWarshall {
             }
         }
         
+        if (trace != null) {
+            trace.endPhase();
+            trace.beginPhase("relax");
+        }
+
         // Core Floyd-Warshall triple loop
         for (int k = 0; k < n; k++) {         // Intermediate nodes
+            // Allow concurrent callers (RouteOptimizer) to cancel a run that is no longer needed
+            if (Thread.currentThread().isInterrupted()) {
+                throw new java.util.concurrent.CancellationException("Floyd-Warshall cancelled");
+            }
+            if (trace != null) trace.record(SearchTrace.Event.SETTLE, nodesList.get(k), null, k);
             for (int i = 0; i < n; i++) {     // Start node
                 for (int j = 0; j < n; j++) { // End node
                     if (distances[i][k] + distances[k][j] < distances[i][j]) {
                         distances[i][j] = distances[i][k] + distances[k][j];
                         next[i][j] = next[i][k]; // Update path
+                        if (trace != null) trace.record(SearchTrace.Event.RELAX, nodesList.get(j), nodesList.get(i), distances[i][j]);
                     }
                 }
             }
         }
+        if (trace != null) {
+            trace.endPhase();
+            trace.beginPhase("reconstruct");
+        }
         
         // Reconstruct shortest path from start → end
         int startIndex = nodesList.indexOf(start);
@@ -77,6 +102,7 @@ public class FloydWarshall {
         
         List<String> path = reconstructPath(next, nodesList, startIndex, endIndex);
         double totalDistance = distances[startIndex][endIndex];
+        if (trace != null) trace.endPhase();
         
         return new ShortestPathResult(distances, next, path, totalDistance);
     }
@@ -152,5 +178,13 @@ public class FloydWarshall {
         
         return allPaths;
     }
+    
+    /**
+     * Returns the number of hops (edges) on the fewest-junction path between
+     * every pair of nodes. Uses BitParallelBfs, which handles 64 sources per pass.
+     */
+    public static BitParallelBfs.HopMatrix getAllHopCounts(Graph graph) {
+        return BitParallelBfs.allPairs(graph);
+    }
 }
 
@@ -1,8 +1,15 @@
 import java.util.*;
 
+/*
+ * Thread safety: every mutator holds the graph's monitor, the same one toCompact()
+ * builds its snapshot under, so an edit never overlaps a snapshot build and the
+ * version moves atomically with the edit. Engines read the immutable CompactGraph.
+ */
 public class Graph {
     private Set<Nodes> nodes;     // Stores all nodes in the graph
     private boolean directed;     // Determines if graph is directed (true) or undirected (false)
+    private volatile long version; // Bumped on every structural or weight change
+    private CompactGraph compact; // Cached CSR snapshot for the current version
 
     // Constructor: initializes the graph as directed/undirected
     Graph(boolean directed) {
@@ -11,14 +18,17 @@ public class Graph {
     }
 
     // Add one or more nodes to the graph
-    public void addNode(Nodes... n) {
-        nodes.addAll(Arrays.asList(n));
+    public synchronized void addNode(Nodes... n) {
+        if (nodes.addAll(Arrays.asList(n))) {
+            version++;
+        }
     }
 
     // Add an edge between two nodes with a given weight
-    public void addEdge(Nodes source, Nodes destination, double weight) {
+    public synchronized void addEdge(Nodes source, Nodes destination, double weight) {
         nodes.add(source);
         nodes.add(destination);
+        version++;
 
         // Add edge from source → destination
         addEgdeHelper(source, destination, weight);
@@ -30,16 +40,18 @@ public class Graph {
     }
 
     // Helper method to add or update an edge between two nodes
-    public void addEgdeHelper(Nodes a, Nodes b, double weight) {
+    public synchronized void addEgdeHelper(Nodes a, Nodes b, double weight) {
         for (Edge edge : a.edges) {
             if (edge.source == a && edge.destination == b) {
                 // If edge already exists, update weight
                 edge.weight = weight;
+                version++;
                 return;
             }
         }
         // If edge doesn’t exist, create new one
         a.edges.add(new Edge(a, b, weight));
+        version++;
     }
 
     // Print all edges for each node in the graph
@@ -61,7 +73,7 @@ public class Graph {
     }
 
     // Check if there is an edge between two nodes
-    public boolean hasEdge(Nodes source, Nodes destination) {
+    public synchronized boolean hasEdge(Nodes source, Nodes destination) {
         LinkedList<Edge> edges = source.edges;
         for (Edge edge : edges) {
             if (edge.destination == destination) {
@@ -71,6 +83,18 @@ public class Graph {
         return false;
     }
 
+    // Remove the edge source → destination (and the reverse edge if undirected); true if anything was removed
+    public synchronized boolean removeEdge(Nodes source, Nodes destination) {
+        boolean removed = source.edges.removeIf(edge -> edge.destination == destination);
+        if (!directed && source != destination) {
+            removed |= destination.edges.removeIf(edge -> edge.destination == source);
+        }
+        if (removed) {
+            version++;
+        }
+        return removed;
+    }
+
     // Reset visited status of all nodes (useful for multiple traversals/algorithms)
     public void resetNodesVisited() {
         for (Nodes node : nodes) {
@@ -79,16 +103,42 @@ public class Graph {
     }
 
     // Get all nodes in the graph
-    public Set<Nodes> getNodes() {
+    public synchronized Set<Nodes> getNodes() {
         return new HashSet<>(nodes);
     }
 
+    // Whether edges are added in both directions
+    public boolean isDirected() {
+        return directed;
+    }
+
+    // Current graph version; any change to nodes, edges or weights increments it
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the compressed (CSR) form of this graph used by the int-indexed engines.
+     * The snapshot is rebuilt lazily whenever the graph version has moved on.
+     */
+    public synchronized CompactGraph toCompact() {
+        if (compact == null || compact.version != version) {
+            compact = new CompactGraph(nodes, version);
+        }
+        return compact;
+    }
+
     /**
      * Dijkstra-like shortest path algorithm
      * Finds and returns the shortest path between two nodes (start → end).
      * Tracks both path and total distance.
      */
     public String shortestPath(Nodes start, Nodes end) {
+        return shortestPath(start, end, null);
+    }
+
+    // Same as shortestPath(start, end), recording each step into the trace (null = off)
+    public String shortestPath(Nodes start, Nodes end, SearchTrace trace) {
         HashMap<Nodes, Nodes> changedAt = new HashMap<>(); // Keeps track of parent nodes for path reconstruction
         changedAt.put(start, null);
 
@@ -110,10 +160,19 @@ public class Graph {
         }
 
         start.visit();
+        if (trace != null) {
+            trace.record(SearchTrace.Event.SETTLE, start, null, 0.0);
+            for (Edge edge : start.edges) {
+                trace.record(SearchTrace.Event.RELAX, edge.destination, start, edge.weight);
+            }
+        }
 
         // Core loop: select closest unvisited node and relax its neighbors
         while (true) {
             Nodes currentNode = closestReachableUnvisited(shortestPath);
+            if (trace != null && currentNode != null) {
+                trace.record(SearchTrace.Event.SETTLE, currentNode, changedAt.get(currentNode), shortestPath.get(currentNode));
+            }
 
             // If no more reachable nodes → no path exists
             if (currentNode == null) {
@@ -150,12 +209,17 @@ public class Graph {
 
             // Relax neighbors (update distances if shorter path found)
             for (Edge edge : currentNode.edges) {
-                if (edge.destination.isVisited())
+                if (edge.destination.isVisited()) {
+                    if (trace != null) trace.record(SearchTrace.Event.PRUNE, edge.destination, currentNode, shortestPath.get(currentNode) + edge.weight);
                     continue;
+                }
 
                 if (shortestPath.get(currentNode) + edge.weight < shortestPath.get(edge.destination)) {
                     shortestPath.put(edge.destination, shortestPath.get(currentNode) + edge.weight);
                     changedAt.put(edge.destination, currentNode);
+                    if (trace != null) trace.record(SearchTrace.Event.RELAX, edge.destination, currentNode, shortestPath.get(edge.destination));
+                } else if (trace != null) {
+                    trace.record(SearchTrace.Event.SCAN, edge.destination, currentNode, shortestPath.get(currentNode) + edge.weight);
                 }
             }
         }
@@ -0,0 +1,123 @@
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Isochrone - reachability within a time or distance budget
+ * ----------------------------------------------------------
+ * Answers "what can I reach within 5 minutes from Main Gate" with a single
+ * bounded Dijkstra search instead of one Graph.shortestPath call per destination.
+ *
+ * Features:
+ * - Stops as soon as the next node would exceed the budget, so the work is
+ *   proportional to the reachable area rather than the whole graph.
+ * - Works with any EdgeCostModel array (distance, walking time, traffic and
+ *   accessibility adjusted time). withinTime reuses the cached array for the
+ *   hour, so repeated queries don't rebuild costs for the whole graph.
+ * - Optionally reports edge fragments: edges that are fully walkable within the
+ *   budget, and how far along the boundary edges you get before time runs out.
+ */
+public class Isochrone {
+
+    /**
+     * Result of a bounded search.
+     */
+    public static class IsochroneResult {
+        public int[] nodes;               // Reachable node ids in order of arrival
+        public double[] arrivalCosts;     // Arrival cost for each entry in nodes
+        public int[] fragmentEdges;       // Edge ids leaving reachable nodes (empty unless requested)
+        public double[] fragmentFractions;// Portion of each fragment edge covered (1.0 = whole edge)
+        public double budget;             // Budget that was applied
+        public List<String> locations;    // Names of the reachable locations
+
+        public IsochroneResult(int[] nodes, double[] arrivalCosts, int[] fragmentEdges,
+            double[] fragmentFractions, double budget, List<String> locations) {
+            this.nodes = nodes;
+            this.arrivalCosts = arrivalCosts;
+            this.fragmentEdges = fragmentEdges;
+            this.fragmentFractions = fragmentFractions;
+            this.budget = budget;
+            this.locations = locations;
+        }
+    }
+
+    /**
+     * Locations reachable from start within a walking-time budget (seconds),
+     * using traffic at the departure time and the accessibility profile when given.
+     * @param departureTime     null to ignore traffic
+     * @param accessibilityType null to ignore accessibility
+     */
+    public static IsochroneResult withinTime(Graph graph, Nodes start, double budgetSeconds,
+        LocalTime departureTime, String accessibilityType, boolean includeEdges) {
+        CompactGraph compact = graph.toCompact();
+        double[] costs = EdgeCostModel.cachedTravelTimes(compact, departureTime, accessibilityType);
+        return reachable(compact, compact.indexOf(start), budgetSeconds, costs, includeEdges);
+    }
+
+    /**
+     * Locations reachable from start within a walking distance budget (meters).
+     */
+    public static IsochroneResult withinDistance(Graph graph, Nodes start, double budgetMeters, boolean includeEdges) {
+        CompactGraph compact = graph.toCompact();
+        return reachable(compact, compact.indexOf(start), budgetMeters, null, includeEdges);
+    }
+
+    /**
+     * Bounded one-to-many search on a CompactGraph.
+     * @param costs Per-edge costs (null = base weights)
+     */
+    public static IsochroneResult reachable(CompactGraph graph, int source, double budget,
+        double[] costs, boolean includeEdges) {
+        if (source < 0) {
+            throw new IllegalArgumentException("Start location is not part of the graph");
+        }
+        double[] edgeCosts = costs == null ? graph.weight : costs;
+        SearchSpace space = SearchSpace.forCurrentThread(graph);
+        space.start(edgeCosts, false);
+        space.addSource(source, 0.0);
+
+        int[] nodes = new int[16];
+        double[] arrival = new double[16];
+        int count = 0;
+
+        int v;
+        while (space.peekDistance() <= budget && (v = space.settleNext()) != -1) {
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, count * 2);
+                arrival = Arrays.copyOf(arrival, count * 2);
+            }
+            nodes[count] = v;
+            arrival[count++] = space.distance(v);
+        }
+        nodes = Arrays.copyOf(nodes, count);
+        arrival = Arrays.copyOf(arrival, count);
+
+        int[] fragmentEdges = new int[0];
+        double[] fragmentFractions = new double[0];
+        if (includeEdges) {
+            int fragments = 0;
+            for (int i = 0; i < count; i++) {
+                fragments += graph.firstOut[nodes[i] + 1] - graph.firstOut[nodes[i]];
+            }
+            fragmentEdges = new int[fragments];
+            fragmentFractions = new double[fragments];
+            int f = 0;
+            for (int i = 0; i < count; i++) {
+                double remaining = budget - arrival[i];
+                for (int e = graph.firstOut[nodes[i]]; e < graph.firstOut[nodes[i] + 1]; e++) {
+                    double cost = edgeCosts[e];
+                    if (cost == Double.POSITIVE_INFINITY) continue;
+                    fragmentEdges[f] = e;
+                    fragmentFractions[f++] = cost <= remaining ? 1.0 : remaining / cost;
+                }
+            }
+            fragmentEdges = Arrays.copyOf(fragmentEdges, f);
+            fragmentFractions = Arrays.copyOf(fragmentFractions, f);
+        }
+
+        List<String> locations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            locations.add(graph.name(nodes[i]));
+        }
+        return new IsochroneResult(nodes, arrival, fragmentEdges, fragmentFractions, budget, locations);
+    }
+}
@@ -0,0 +1,176 @@
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * KShortestPaths - Yen's k-shortest loopless paths
+ * -------------------------------------------------
+ * Produces genuine route alternatives: the shortest path, then the next
+ * shortest path that differs from it, and so on, with no repeated locations
+ * in any path.
+ *
+ * How it works (Yen's algorithm):
+ * - For the last accepted path, every node on it is tried as a "spur node".
+ * - The root (prefix up to the spur node) is kept, its nodes are blocked, and the
+ *   edges that earlier paths with the same root took out of the spur node are
+ *   blocked; a Dijkstra search from the spur node to the target completes it.
+ * - Spur searches are independent, so they run in parallel across cores.
+ * - The cheapest candidate becomes the next path.
+ * - A caller that no longer needs the result (e.g. RouteStream) can pass a
+ *   cancellation check; it is polled before every spur search.
+ *
+ * Paths are returned as int node ids on the CompactGraph.
+ */
+public class KShortestPaths {
+
+    /**
+     * A loopless path on the CompactGraph.
+     */
+    public static class PathResult {
+        public int[] nodes;      // Node ids from source to target
+        public int[] edges;      // Edge ids (nodes.length - 1 of them)
+        public double cost;      // Total cost under the cost array used
+        public int settled;      // Nodes settled by the search(es) that produced this path
+
+        public PathResult(int[] nodes, int[] edges, double cost, int settled) {
+            this.nodes = nodes;
+            this.edges = edges;
+            this.cost = cost;
+            this.settled = settled;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            return Arrays.equals(edges, ((PathResult) obj).edges) && Arrays.equals(nodes, ((PathResult) obj).nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(edges) * 31 + Arrays.hashCode(nodes);
+        }
+    }
+
+    /**
+     * Finds up to k shortest loopless paths between two locations by distance.
+     */
+    public static List<PathResult> find(Graph graph, Nodes start, Nodes end, int k) {
+        CompactGraph compact = graph.toCompact();
+        return find(compact, compact.indexOf(start), compact.indexOf(end), k, null);
+    }
+
+    /**
+     * Finds up to k shortest loopless paths, cheapest first.
+     * @param costs Per-edge costs (null = base weights)
+     */
+    public static List<PathResult> find(CompactGraph graph, int source, int target, int k, double[] costs) {
+        return find(graph, source, target, k, costs, () -> false);
+    }
+
+    /**
+     * Finds up to k shortest loopless paths, cheapest first, stopping with a
+     * CancellationException once cancelled returns true.
+     * @param costs     Per-edge costs (null = base weights)
+     * @param cancelled Polled before every spur search
+     */
+    public static List<PathResult> find(CompactGraph graph, int source, int target, int k, double[] costs,
+        BooleanSupplier cancelled) {
+        List<PathResult> accepted = new ArrayList<>();
+        if (source < 0 || target < 0 || k <= 0) {
+            return accepted;
+        }
+        double[] edgeCosts = costs == null ? graph.weight : costs;
+
+        PathResult first = spurPath(graph, edgeCosts, new int[] { source }, new int[0], 0.0, target, accepted, cancelled);
+        if (first == null) {
+            return accepted;
+        }
+        accepted.add(first);
+
+        PriorityQueue<PathResult> candidates = new PriorityQueue<>(Comparator.comparingDouble(p -> p.cost));
+        Set<PathResult> known = new HashSet<>();
+        known.add(first);
+
+        while (accepted.size() < k) {
+            PathResult previous = accepted.get(accepted.size() - 1);
+            List<PathResult> snapshot = new ArrayList<>(accepted);
+
+            // One spur search per node of the previous path (except the target)
+            List<PathResult> spurs = IntStream.range(0, previous.nodes.length - 1).parallel()
+                .mapToObj(i -> {
+                    int[] rootNodes = Arrays.copyOf(previous.nodes, i + 1);
+                    int[] rootEdges = Arrays.copyOf(previous.edges, i);
+                    double rootCost = 0.0;
+                    for (int e : rootEdges) rootCost += edgeCosts[e];
+                    return spurPath(graph, edgeCosts, rootNodes, rootEdges, rootCost, target, snapshot, cancelled);
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+            for (PathResult spur : spurs) {
+                if (known.add(spur)) {
+                    candidates.add(spur);
+                }
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            accepted.add(candidates.poll());
+        }
+        return accepted;
+    }
+
+    /**
+     * Completes a root path with the shortest spur path to the target, avoiding
+     * the root's nodes and the next edges of accepted paths that share the root.
+     */
+    private static PathResult spurPath(CompactGraph graph, double[] costs, int[] rootNodes, int[] rootEdges,
+        double rootCost, int target, List<PathResult> accepted, BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("K-shortest search cancelled");
+        }
+        int spurNode = rootNodes[rootNodes.length - 1];
+        int depth = rootEdges.length;
+
+        SearchSpace space = SearchSpace.forCurrentThread(graph);
+        space.start(costs, false);
+        for (int i = 0; i < depth; i++) {
+            space.blockNode(rootNodes[i]);
+        }
+        for (PathResult path : accepted) {
+            if (path.edges.length > depth && sharesRoot(path, rootNodes)) {
+                space.blockEdge(path.edges[depth]);
+            }
+        }
+        space.addSource(spurNode, 0.0);
+
+        int v;
+        while ((v = space.settleNext()) != -1 && v != target) {
+            // Run until the target is settled
+        }
+        if (v != target) {
+            return null;
+        }
+
+        int[] spur = space.pathTo(target);
+        int[] nodes = new int[depth + spur.length];
+        int[] edges = new int[nodes.length - 1];
+        System.arraycopy(rootNodes, 0, nodes, 0, depth);
+        System.arraycopy(spur, 0, nodes, depth, spur.length);
+        System.arraycopy(rootEdges, 0, edges, 0, depth);
+        for (int i = depth; i < edges.length; i++) {
+            edges[i] = space.parentEdge(nodes[i + 1]);
+        }
+        return new PathResult(nodes, edges, rootCost + space.distance(target), space.settledCount());
+    }
+
+    private static boolean sharesRoot(PathResult path, int[] rootNodes) {
+        for (int i = 0; i < rootNodes.length; i++) {
+            if (path.nodes[i] != rootNodes[i]) return false;
+        }
+        return true;
+    }
+}
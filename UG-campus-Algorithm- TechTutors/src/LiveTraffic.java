@@ -0,0 +1,299 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * LiveTraffic - live congestion factors from an observation feed
+ * ---------------------------------------------------------------
+ * TrafficSimulator's factors are fixed when the class loads. This layer ingests
+ * observed congestion factors ("Main Gate is at 1.8x right now") and makes the
+ * current value per location available to routing threads.
+ *
+ * Layout:
+ * - Locations are fixed at construction and numbered 0..n-1.
+ * - Each location has a ring of BUCKETS time buckets of BUCKET_SECONDS each
+ *   (the last hour). Observations are added to the bucket of their timestamp;
+ *   older buckets are reused as time moves on.
+ * - The current factor is the observation-weighted mean of the RECENT_BUCKETS
+ *   newest buckets, with newer buckets weighted more.
+ *
+ * Concurrency:
+ * - Exactly one writer (the feed thread) owns the bucket sums and counts.
+ * - After each observation it publishes the bucket mean and current factor with
+ *   release stores into atomic arrays. Readers only do acquire loads, so reads
+ *   never lock, never allocate and never see a half-written value.
+ * - Feed format, one observation per line: epochMillis,location,factor
+ *   (a file replays a recording; a socket is the stand-in for the real feed).
+ */
+public class LiveTraffic {
+    static final int BUCKET_SECONDS = 300;
+    static final int BUCKETS = 12;
+    static final int RECENT_BUCKETS = 3;
+    private static final long NO_BUCKET = Long.MIN_VALUE;
+
+    private final Map<String, Integer> locationIds = new HashMap<>();   // Read-only after construction
+    private final String[] locationNames;
+    private final ZoneId zone;
+
+    // Writer-only state: ring buffers of (bucket number, sum, count)
+    private final long[] bucketOf;
+    private final double[] sums;
+    private final int[] counts;
+    private long latestBucket = NO_BUCKET;
+
+    // Published state, read by any thread
+    private final AtomicLongArray publishedBucket;    // Ring slot -> bucket number it holds
+    private final AtomicLongArray publishedMean;      // Ring slot -> mean factor bits
+    private final AtomicLongArray currentFactor;      // Location -> current factor bits (NaN = no recent data)
+    private final AtomicLong clock = new AtomicLong(NO_BUCKET);   // Newest bucket seen
+    private final AtomicInteger windowStart = new AtomicInteger(-1); // Clock time (second of day) the recent window starts
+    private final AtomicLong version = new AtomicLong();         // Bumped on every publication
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicBoolean feedStarted = new AtomicBoolean();
+
+    public LiveTraffic(Collection<String> locations) {
+        this(locations, ZoneId.systemDefault());
+    }
+
+    /**
+     * @param zone Time zone used to turn feed timestamps into campus clock times
+     */
+    public LiveTraffic(Collection<String> locations, ZoneId zone) {
+        this.zone = zone;
+        this.locationNames = new LinkedHashSet<>(locations).toArray(new String[0]);
+        for (int i = 0; i < locationNames.length; i++) {
+            locationIds.put(locationNames[i], i);
+        }
+        int slots = locationNames.length * BUCKETS;
+        bucketOf = new long[slots];
+        sums = new double[slots];
+        counts = new int[slots];
+        Arrays.fill(bucketOf, NO_BUCKET);
+        publishedBucket = new AtomicLongArray(slots);
+        publishedMean = new AtomicLongArray(slots);
+        currentFactor = new AtomicLongArray(locationNames.length);
+        for (int i = 0; i < slots; i++) {
+            publishedBucket.set(i, NO_BUCKET);
+        }
+        for (int i = 0; i < locationNames.length; i++) {
+            currentFactor.set(i, Double.doubleToRawLongBits(Double.NaN));
+        }
+    }
+
+    /**
+     * Live layer for every location of a graph.
+     */
+    public static LiveTraffic forGraph(Graph graph) {
+        CompactGraph compact = graph.toCompact();
+        List<String> names = new ArrayList<>(compact.nodeCount());
+        for (int v = 0; v < compact.nodeCount(); v++) {
+            names.add(compact.name(v));
+        }
+        return new LiveTraffic(names);
+    }
+
+    public int locationId(String location) {
+        Integer id = locationIds.get(location);
+        return id == null ? -1 : id;
+    }
+
+    public int locationCount() {
+        return locationNames.length;
+    }
+
+    public String locationName(int id) {
+        return locationNames[id];
+    }
+
+    /**
+     * Current observed factor of a location, or NaN without recent observations.
+     */
+    public double currentFactor(int id) {
+        return Double.longBitsToDouble(currentFactor.get(id));
+    }
+
+    public double currentFactor(String location) {
+        int id = locationId(location);
+        return id < 0 ? Double.NaN : currentFactor(id);
+    }
+
+    /**
+     * Mean factor of one bucket of the ring (0 = the newest bucket), or NaN when
+     * that bucket has no observations.
+     */
+    public double bucketFactor(int id, int bucketsAgo) {
+        long now = clock.get();
+        if (now == NO_BUCKET || bucketsAgo < 0 || bucketsAgo >= BUCKETS) {
+            return Double.NaN;
+        }
+        long bucket = now - bucketsAgo;
+        int slot = id * BUCKETS + (int) Math.floorMod(bucket, (long) BUCKETS);
+        // The bucket number is retired before a reused slot's mean changes, so re-checking it detects the reuse
+        if (publishedBucket.get(slot) != bucket) return Double.NaN;
+        double mean = Double.longBitsToDouble(publishedMean.get(slot));
+        return publishedBucket.get(slot) == bucket ? mean : Double.NaN;
+    }
+
+    /**
+     * True when a departure time falls inside the window the live factors describe.
+     */
+    public boolean covers(LocalTime time) {
+        int start = windowStart.get();
+        return start >= 0 && Math.floorMod(time.toSecondOfDay() - start, TrafficProfile.DAY_SECONDS) < RECENT_BUCKETS * BUCKET_SECONDS;
+    }
+
+    // Increases whenever any factor is republished (e.g. to rebuild cost arrays)
+    public long version() {
+        return version.get();
+    }
+
+    public long acceptedObservations() {
+        return accepted.get();
+    }
+
+    // Malformed lines, unknown locations and observations too old for the ring
+    public long rejectedObservations() {
+        return rejected.get();
+    }
+
+    /**
+     * Adds one observation. Must only be called from the single writer thread.
+     * Returns false if the location is unknown or the observation is older than the ring.
+     */
+    public boolean record(String location, long epochMillis, double factor) {
+        int id = locationId(location);
+        if (id < 0 || !(factor > 0) || Double.isInfinite(factor)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        long bucket = Math.floorDiv(epochMillis, BUCKET_SECONDS * 1000L);
+        if (latestBucket != NO_BUCKET && bucket <= latestBucket - BUCKETS) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        if (latestBucket == NO_BUCKET || bucket > latestBucket) {
+            advanceTo(bucket);
+        }
+
+        int slot = id * BUCKETS + (int) Math.floorMod(bucket, (long) BUCKETS);
+        if (bucketOf[slot] != bucket) {
+            // Retire the old bucket number first, so a reader cannot pair it with the new mean
+            publishedBucket.lazySet(slot, NO_BUCKET);
+            bucketOf[slot] = bucket;
+            sums[slot] = 0;
+            counts[slot] = 0;
+        }
+        sums[slot] += factor;
+        counts[slot]++;
+        publishedMean.lazySet(slot, Double.doubleToRawLongBits(sums[slot] / counts[slot]));
+        publishedBucket.lazySet(slot, bucket);
+        publishCurrent(id);
+        accepted.incrementAndGet();
+        version.lazySet(version.get() + 1);
+        return true;
+    }
+
+    /**
+     * Moves the clock forward without an observation (e.g. on a feed heartbeat),
+     * so locations that have gone quiet age out. Writer thread only.
+     */
+    public void advanceClock(long epochMillis) {
+        advanceTo(Math.floorDiv(epochMillis, BUCKET_SECONDS * 1000L));
+    }
+
+    private void advanceTo(long bucket) {
+        if (latestBucket != NO_BUCKET && bucket <= latestBucket) {
+            return;
+        }
+        latestBucket = bucket;
+        long start = (bucket - RECENT_BUCKETS + 1) * BUCKET_SECONDS;
+        windowStart.lazySet(LocalTime.ofInstant(Instant.ofEpochSecond(start), zone).toSecondOfDay());
+        clock.lazySet(bucket);
+        for (int id = 0; id < locationNames.length; id++) {
+            publishCurrent(id);
+        }
+        version.lazySet(version.get() + 1);
+    }
+
+    // Recomputes and publishes one location's current factor from its recent buckets
+    private void publishCurrent(int id) {
+        double weighted = 0;
+        double weights = 0;
+        for (int age = 0; age < RECENT_BUCKETS; age++) {
+            long bucket = latestBucket - age;
+            int slot = id * BUCKETS + (int) Math.floorMod(bucket, (long) BUCKETS);
+            if (bucketOf[slot] != bucket || counts[slot] == 0) continue;
+            double weight = counts[slot] * (RECENT_BUCKETS - age);
+            weighted += sums[slot] / counts[slot] * weight;
+            weights += weight;
+        }
+        currentFactor.lazySet(id, Double.doubleToRawLongBits(weights == 0 ? Double.NaN : weighted / weights));
+    }
+
+    /**
+     * Reads observations until the end of the stream. Writer thread only.
+     * Returns the number of lines accepted.
+     */
+    public long ingest(BufferedReader reader) throws IOException {
+        long count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split(",");
+            try {
+                if (parts.length == 3 && record(parts[1].trim(), Long.parseLong(parts[0].trim()), Double.parseDouble(parts[2].trim()))) {
+                    count++;
+                } else if (parts.length != 3) {
+                    rejected.incrementAndGet();
+                }
+            } catch (NumberFormatException e) {
+                rejected.incrementAndGet();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Replays a recorded feed file on a background writer thread.
+     */
+    public Thread startFileFeed(Path file) {
+        return startFeed("traffic-feed-file", () -> Files.newBufferedReader(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a live feed from a TCP socket on a background writer thread, until the
+     * server closes the connection.
+     */
+    public Thread startSocketFeed(String host, int port) {
+        return startFeed("traffic-feed-socket", () -> {
+            Socket socket = new Socket(host, port);
+            return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        });
+    }
+
+    private interface FeedSource {
+        BufferedReader open() throws IOException;
+    }
+
+    // There is one writer per LiveTraffic, so only one feed may ever be started
+    private Thread startFeed(String name, FeedSource source) {
+        if (!feedStarted.compareAndSet(false, true)) {
+            throw new IllegalStateException("A feed is already writing to this LiveTraffic");
+        }
+        Thread thread = new Thread(() -> {
+            try (BufferedReader reader = source.open()) {
+                ingest(reader);
+            } catch (IOException e) {
+                System.err.println("Traffic feed stopped: " + e.getMessage());
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.Arrays;
+
+/**
+ * MinHeap - indexed binary min-heap over dense int ids
+ * -----------------------------------------------------
+ * Priority queue used by the CompactGraph search engines. Unlike
+ * java.util.PriorityQueue it supports decrease-key in O(log n) and never
+ * allocates per operation, so a heap can be reused for thousands of searches.
+ *
+ * Each id 0..capacity-1 can be in the heap at most once.
+ */
+public class MinHeap {
+    private final int[] heap;         // Heap slot -> id
+    private final int[] position;     // Id -> heap slot (-1 when not queued)
+    private final double[] key;       // Id -> current priority
+    private int size;
+
+    public MinHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        key = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return position[id] >= 0;
+    }
+
+    // Smallest priority currently queued (only valid when not empty)
+    public double peekKey() {
+        return key[heap[0]];
+    }
+
+    /**
+     * Inserts id with the given priority, or lowers its priority if already queued
+     * and the new value is smaller. Returns true if the heap changed.
+     */
+    public boolean insertOrDecrease(int id, double priority) {
+        int slot = position[id];
+        if (slot < 0) {
+            key[id] = priority;
+            heap[size] = id;
+            position[id] = size;
+            siftUp(size++);
+            return true;
+        }
+        if (priority < key[id]) {
+            key[id] = priority;
+            siftUp(slot);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes and returns the id with the smallest priority.
+     */
+    public int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    // Empties the heap in O(size) so it can be reused
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int slot) {
+        int id = heap[slot];
+        double k = key[id];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            int parentId = heap[parent];
+            if (key[parentId] <= k) break;
+            heap[slot] = parentId;
+            position[parentId] = slot;
+            slot = parent;
+        }
+        heap[slot] = id;
+        position[id] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int id = heap[slot];
+        double k = key[id];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            int right = child + 1;
+            if (right < size && key[heap[right]] < key[heap[child]]) {
+                child = right;
+            }
+            if (key[heap[child]] >= k) break;
+            heap[slot] = heap[child];
+            position[heap[slot]] = slot;
+            slot = child;
+        }
+        heap[slot] = id;
+        position[id] = slot;
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * ParallelPartitions - parallel sums that do not depend on the thread count
+ * ---------------------------------------------------------------------------
+ * Splits items 0 .. count - 1 into at most PARTITIONS contiguous ranges that
+ * run in parallel, each adding into its own array. The arrays are then added
+ * up in partition order, so the floating-point result is the same on every
+ * machine and every run.
+ *
+ * Typical use:
+ *   ParallelPartitions.sum(sources.length, scores, (from, to, sums) -> {
+ *       ... per-partition workspace ...
+ *       for (int i = from; i < to; i++) sums[...] += ...;
+ *   });
+ *
+ * Keep an instance when summing repeatedly (e.g. once per simulation step) so
+ * the partition arrays are allocated once.
+ */
+final class ParallelPartitions {
+    static final int PARTITIONS = 64;
+
+    /**
+     * Work of one partition: adds the contribution of items from .. to - 1 into
+     * sums, which starts out zeroed.
+     */
+    @FunctionalInterface
+    interface Partition {
+        void run(int from, int to, double[] sums);
+    }
+
+    private final int count;
+    private final int size;           // Items per partition (the last one may have fewer)
+    private final double[][] partials;
+
+    ParallelPartitions(int count, int width) {
+        int partitions = Math.max(1, Math.min(count, PARTITIONS));
+        this.count = count;
+        this.size = (count + partitions - 1) / partitions;
+        this.partials = new double[partitions][width];
+    }
+
+    static void sum(int count, double[] total, Partition partition) {
+        new ParallelPartitions(count, total.length).sumInto(total, partition);
+    }
+
+    /**
+     * Runs every partition and overwrites total with the sum of their arrays.
+     */
+    void sumInto(double[] total, Partition partition) {
+        IntStream.range(0, partials.length).parallel().forEach(p -> {
+            double[] sums = partials[p];
+            Arrays.fill(sums, 0);
+            partition.run(Math.min(count, p * size), Math.min(count, (p + 1) * size), sums);
+        });
+        Arrays.fill(total, 0);
+        for (double[] sums : partials) {
+            for (int i = 0; i < total.length; i++) total[i] += sums[i];
+        }
+    }
+}
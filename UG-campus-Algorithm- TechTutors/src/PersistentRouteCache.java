@@ -0,0 +1,301 @@
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PersistentRouteCache - route results in a memory-mapped file
+ * -------------------------------------------------------------
+ * A restarted process maps the file and serves the routes it already holds.
+ * There is nothing to load or deserialize up front, so the cache is warm as
+ * soon as the file is mapped.
+ *
+ * Layout:
+ * - Header: magic, format, slot count, slot size.
+ * - Open-addressing hash table of fixed-size slots with linear probing
+ *   (at most MAX_PROBES slots per key).
+ * - Slot: sequence number, payload length, 64-bit key hash, graph fingerprint,
+ *   then the encoded key and RouteAnalysis (routes, optimal route, timings).
+ *
+ * Versioning and sharing:
+ * - Entries are tagged with CompactGraph.fingerprint(), a content hash that is
+ *   stable across processes. In-memory graph versions restart in every process,
+ *   so they cannot be used here. Entries for another graph are ignored and their
+ *   slots are reused.
+ * - Several processes on the same host may map the same file. Writers serialize
+ *   on a file lock and bump a slot's sequence number around each write. Readers
+ *   take no lock: they copy the slot and retry if the sequence number changed.
+ *   The sequence number is read with acquire and written with release semantics
+ *   (plus fences around the payload copy), so a reader that sees the same even
+ *   number before and after its copy also saw the payload written before it.
+ */
+public class PersistentRouteCache implements Closeable {
+    static final int DEFAULT_SLOTS = 4096;
+    static final int DEFAULT_SLOT_SIZE = 1024;
+    static final int MAX_PROBES = 8;
+    private static final int MAGIC = 0x55475243;      // "UGRC"
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_HEADER = 24;       // seq, length, key hash, fingerprint
+    private static final int READ_RETRIES = 4;
+    // Ordered access to the slot sequence numbers (the mapped buffer is big-endian)
+    private static final VarHandle SEQ = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int slotSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder overwrites = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Opens (or creates) a cache file with the default geometry (4096 slots of 1 KB).
+     */
+    public static PersistentRouteCache open(Path file) throws IOException {
+        return new PersistentRouteCache(file, DEFAULT_SLOTS, DEFAULT_SLOT_SIZE);
+    }
+
+    /**
+     * @param slotCount Number of slots (rounded up to a power of two)
+     * @param slotSize  Bytes per slot (a multiple of 8); routes that encode larger are not stored
+     */
+    public PersistentRouteCache(Path file, int slotCount, int slotSize) throws IOException {
+        if (slotSize <= SLOT_HEADER + 16) {
+            throw new IllegalArgumentException("Slot size too small: " + slotSize);
+        }
+        if (slotSize % 8 != 0) {
+            // Sequence numbers need aligned offsets for acquire/release access
+            throw new IllegalArgumentException("Slot size must be a multiple of 8: " + slotSize);
+        }
+        this.slotCount = Integer.highestOneBit(Math.max(2, slotCount) - 1) << 1;
+        this.slotSize = slotSize;
+        long size = HEADER_SIZE + (long) this.slotCount * slotSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cache file would exceed 2 GB");
+        }
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock = null;
+        try {
+            lock = channel.lock();
+            boolean compatible = channel.size() == size;
+            if (compatible) {
+                ByteBuffer header = ByteBuffer.allocate(16);
+                channel.read(header, 0);
+                header.flip();
+                compatible = header.getInt() == MAGIC && header.getInt() == FORMAT
+                    && header.getInt() == this.slotCount && header.getInt() == slotSize;
+            }
+            if (!compatible) {
+                // New file or different geometry: start empty
+                channel.truncate(0);
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (!compatible) {
+                buffer.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, this.slotCount).putInt(12, slotSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        } finally {
+            if (lock != null && lock.isValid()) {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Cached analysis for the key on the graph with this fingerprint, or null.
+     * key.graphVersion is ignored; the fingerprint takes its place.
+     */
+    public RouteOptimizer.RouteAnalysis get(RouteCache.Key key, long fingerprint) {
+        long keyHash = keyHash(key);
+        int home = (int) keyHash & (slotCount - 1);
+        byte[] payload = new byte[slotSize - SLOT_HEADER];
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = HEADER_SIZE + ((home + probe) & (slotCount - 1)) * slotSize;
+            for (int attempt = 0; attempt < READ_RETRIES; attempt++) {
+                int seq = (int) SEQ.getAcquire(buffer, slot);
+                if ((seq & 1) != 0) {
+                    continue; // Being written by another thread or process
+                }
+                int length = buffer.getInt(slot + 4);
+                if (length == 0) {
+                    misses.increment();
+                    return null; // End of the probe chain
+                }
+                if (buffer.getLong(slot + 8) != keyHash || buffer.getLong(slot + 16) != fingerprint) {
+                    break; // Another key; try the next slot
+                }
+                int copied = Math.min(length, payload.length);
+                buffer.get(slot + SLOT_HEADER, payload, 0, copied);
+                VarHandle.acquireFence(); // Keep the copy above the re-check
+                if ((int) SEQ.getAcquire(buffer, slot) != seq) {
+                    continue; // Torn read; retry
+                }
+                RouteOptimizer.RouteAnalysis analysis = decode(payload, copied, key);
+                if (analysis != null) {
+                    hits.increment();
+                    return analysis;
+                }
+                break; // Hash collision with a different key
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores the analysis. Returns false if it does not fit in a slot.
+     */
+    public synchronized boolean put(RouteCache.Key key, long fingerprint, RouteOptimizer.RouteAnalysis analysis) throws IOException {
+        byte[] payload = encode(key, analysis);
+        if (payload.length > slotSize - SLOT_HEADER) {
+            rejections.increment();
+            return false;
+        }
+        long keyHash = keyHash(key);
+        int home = (int) keyHash & (slotCount - 1);
+
+        // Other processes write under the same lock on the header region
+        FileLock lock = channel.lock(0, HEADER_SIZE, false);
+        try {
+            int target = -1;
+            for (int probe = 0; probe < MAX_PROBES && target < 0; probe++) {
+                int slot = HEADER_SIZE + ((home + probe) & (slotCount - 1)) * slotSize;
+                boolean empty = buffer.getInt(slot + 4) == 0;
+                boolean sameKey = buffer.getLong(slot + 8) == keyHash && buffer.getLong(slot + 16) == fingerprint;
+                boolean stale = buffer.getLong(slot + 16) != fingerprint;
+                if (empty || sameKey || stale) {
+                    target = slot;
+                }
+            }
+            if (target < 0) {
+                // Chain is full of live entries: replace the one in the home slot
+                target = HEADER_SIZE + home * slotSize;
+                overwrites.increment();
+            }
+
+            int seq = (int) SEQ.getAcquire(buffer, target);
+            SEQ.setRelease(buffer, target, seq | 1);
+            VarHandle.releaseFence(); // Readers must see the odd number before any payload byte
+            buffer.putLong(target + 8, keyHash);
+            buffer.putLong(target + 16, fingerprint);
+            buffer.put(target + SLOT_HEADER, payload);
+            buffer.putInt(target + 4, payload.length);
+            SEQ.setRelease(buffer, target, (seq | 1) + 1);
+        } finally {
+            lock.release();
+        }
+        return true;
+    }
+
+    public RouteCache.CacheStats stats() {
+        int used = 0;
+        for (int i = 0; i < slotCount; i++) {
+            if (buffer.getInt(HEADER_SIZE + i * slotSize + 4) != 0) used++;
+        }
+        return new RouteCache.CacheStats(hits.sum(), misses.sum(), overwrites.sum(), rejections.sum(), used);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    // 64-bit hash of everything in the key except the in-memory graph version
+    private static long keyHash(RouteCache.Key key) {
+        long h = 0xCBF29CE484222325L;
+        for (String part : new String[] { key.start, key.end, key.profile }) {
+            for (byte b : part.getBytes(StandardCharsets.UTF_8)) {
+                h = (h ^ b) * 0x100000001B3L;
+            }
+            h = (h ^ 0xFF) * 0x100000001B3L;
+        }
+        h = (h ^ key.departureBucket) * 0x100000001B3L;
+        return h == 0 ? 1 : h;
+    }
+
+    private static byte[] encode(RouteCache.Key key, RouteOptimizer.RouteAnalysis analysis) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key.start);
+        out.writeUTF(key.end);
+        out.writeUTF(key.profile);
+        out.writeInt(key.departureBucket);
+
+        out.writeShort(analysis.routes.size());
+        out.writeShort(analysis.routes.indexOf(analysis.optimalRoute));
+        for (SortingAlgorithms.Route route : analysis.routes) {
+            out.writeUTF(route.algorithm);
+            out.writeDouble(route.distance);
+            out.writeDouble(route.time);
+            out.writeShort(route.path.size());
+            for (String location : route.path) {
+                out.writeUTF(location);
+            }
+        }
+        out.writeShort(analysis.algorithmPerformance.size());
+        for (Map.Entry<String, Double> entry : analysis.algorithmPerformance.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeDouble(entry.getValue());
+        }
+        out.writeShort(analysis.landmarks.size());
+        for (String landmark : analysis.landmarks) {
+            out.writeUTF(landmark);
+        }
+        out.writeDouble(analysis.trafficFactor);
+        return bytes.toByteArray();
+    }
+
+    // Decodes a slot payload; null if it belongs to a different key or is corrupt
+    private static RouteOptimizer.RouteAnalysis decode(byte[] payload, int length, RouteCache.Key key) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+            if (!in.readUTF().equals(key.start) || !in.readUTF().equals(key.end)
+                || !in.readUTF().equals(key.profile) || in.readInt() != key.departureBucket) {
+                return null;
+            }
+            RouteOptimizer.RouteAnalysis analysis = new RouteOptimizer.RouteAnalysis();
+            int routeCount = in.readShort();
+            int optimal = in.readShort();
+            for (int r = 0; r < routeCount; r++) {
+                String algorithm = in.readUTF();
+                double distance = in.readDouble();
+                double time = in.readDouble();
+                int stops = in.readShort();
+                List<String> path = new ArrayList<>(stops);
+                for (int i = 0; i < stops; i++) {
+                    path.add(in.readUTF());
+                }
+                analysis.routes.add(new SortingAlgorithms.Route(path, distance, time, algorithm));
+            }
+            analysis.optimalRoute = optimal >= 0 && optimal < routeCount ? analysis.routes.get(optimal) : null;
+            int engines = in.readShort();
+            for (int i = 0; i < engines; i++) {
+                analysis.algorithmPerformance.put(in.readUTF(), in.readDouble());
+            }
+            int landmarks = in.readShort();
+            for (int i = 0; i < landmarks; i++) {
+                analysis.landmarks.add(in.readUTF());
+            }
+            analysis.trafficFactor = in.readDouble();
+            return analysis;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * ProfileSearch - travel time as a function of departure time
+ * ------------------------------------------------------------
+ * TrafficSimulator.findOptimalDepartureTimes tries 11 whole hours; running
+ * TimeDependentRouting for every minute of the day would take 1440 searches.
+ * A profile search answers every departure time at once.
+ *
+ * How it works:
+ * - Each node is labelled with its arrival function: arrival time at the node as
+ *   a piecewise-linear function of the departure time from the start, over a day.
+ * - Following edge e composes the label with the TrafficProfile arrival function
+ *   of e; reaching a node along several edges keeps the pointwise minimum.
+ * - Labels are corrected until nothing improves (label-correcting, ordered by the
+ *   earliest arrival in each label). A node whose label is nowhere better than the
+ *   target's is not expanded further.
+ *
+ * Because every function is kept exactly (breakpoints plus linear pieces), the
+ * result gives the exact best departure time, not the best of a sample.
+ */
+public class ProfileSearch {
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Arrival time at the end for every departure time from the start.
+     */
+    public static class DepartureProfile {
+        public String from;               // Start location
+        public String to;                 // End location
+        public double[] departures;       // Breakpoints, seconds since midnight (0 .. 86400)
+        public double[] arrivals;         // Arrival time for each breakpoint (may pass 86400)
+        public int nodesScanned;          // Label scans, counting repeated corrections
+
+        public DepartureProfile(String from, String to, double[] departures, double[] arrivals, int nodesScanned) {
+            this.from = from;
+            this.to = to;
+            this.departures = departures;
+            this.arrivals = arrivals;
+            this.nodesScanned = nodesScanned;
+        }
+
+        // Arrival time when leaving at the given time (seconds since midnight)
+        public double arrivalAt(double departure) {
+            return evaluate(departures, arrivals, departures.length, departure);
+        }
+
+        public double travelTimeAt(double departure) {
+            return arrivalAt(departure) - departure;
+        }
+
+        /**
+         * Departure in [earliest, latest] (seconds) with the shortest travel time.
+         * Travel time is linear between breakpoints, so the minimum is at one of them.
+         */
+        public double bestDeparture(double earliest, double latest) {
+            double best = earliest;
+            double bestTime = travelTimeAt(earliest);
+            for (double candidate : candidates(earliest, latest, 0)) {
+                double time = travelTimeAt(candidate);
+                if (time < bestTime - EPSILON) {
+                    best = candidate;
+                    bestTime = time;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Whole minute in [earliest, latest] with the shortest travel time.
+         * Between breakpoints the best minute is the first or last in the piece,
+         * so only minutes next to a breakpoint need checking.
+         */
+        public LocalTime bestDepartureMinute(LocalTime earliest, LocalTime latest) {
+            double first = Math.ceil(earliest.toSecondOfDay() / 60.0) * 60;
+            double last = Math.floor(latest.toSecondOfDay() / 60.0) * 60;
+            double best = first;
+            double bestTime = travelTimeAt(first);
+            for (double candidate : candidates(first, last, 60)) {
+                double time = travelTimeAt(candidate);
+                if (time < bestTime - EPSILON) {
+                    best = candidate;
+                    bestTime = time;
+                }
+            }
+            return LocalTime.ofSecondOfDay((long) best);
+        }
+
+        /**
+         * Latest departure that still arrives by the given time (seconds), or NaN if
+         * even leaving at midnight is too late.
+         */
+        public double latestDeparture(double arriveBy) {
+            if (arrivals[0] > arriveBy) {
+                return Double.NaN;
+            }
+            // Arrival never decreases with departure (FIFO), so scan for the last piece that fits
+            int i = arrivals.length - 1;
+            while (arrivals[i] > arriveBy) i--;
+            if (i == arrivals.length - 1) {
+                return departures[i];
+            }
+            double span = arrivals[i + 1] - arrivals[i];
+            return span <= 0 ? departures[i]
+                : departures[i] + (arriveBy - arrivals[i]) / span * (departures[i + 1] - departures[i]);
+        }
+
+        /**
+         * The "leave at X, arrive at Y" curve, one line per breakpoint.
+         */
+        public List<String> curve() {
+            List<String> lines = new ArrayList<>(departures.length);
+            for (int i = 0; i < departures.length; i++) {
+                lines.add(String.format("Leave %s -> arrive %s (%.1fs)", clock(departures[i]), clock(arrivals[i]),
+                    arrivals[i] - departures[i]));
+            }
+            return lines;
+        }
+
+        // Breakpoints in the window, and the grid points either side of each when a grid is given
+        private List<Double> candidates(double earliest, double latest, double grid) {
+            List<Double> points = new ArrayList<>();
+            for (double t : departures) {
+                if (grid > 0) {
+                    addIfWithin(points, Math.floor(t / grid) * grid, earliest, latest);
+                    addIfWithin(points, Math.ceil(t / grid) * grid, earliest, latest);
+                } else {
+                    addIfWithin(points, t, earliest, latest);
+                }
+            }
+            points.add(latest);
+            return points;
+        }
+
+        private static void addIfWithin(List<Double> points, double t, double earliest, double latest) {
+            if (t >= earliest && t <= latest) points.add(t);
+        }
+
+        private static LocalTime clock(double seconds) {
+            return LocalTime.ofSecondOfDay(Math.floorMod(Math.round(seconds), TrafficProfile.DAY_SECONDS));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s: %d breakpoints", from, to, departures.length);
+        }
+    }
+
+    /**
+     * Departure profile with TrafficSimulator traffic. Returns null if there is no path.
+     */
+    public static DepartureProfile profile(Graph graph, Nodes start, Nodes end) {
+        CompactGraph compact = graph.toCompact();
+        return profile(TrafficProfile.cachedFromTrafficSimulator(compact), compact.indexOf(start), compact.indexOf(end));
+    }
+
+    /**
+     * One-to-one profile search on a CompactGraph, for departures over a whole day.
+     */
+    public static DepartureProfile profile(TrafficProfile profile, int source, int target) {
+        CompactGraph graph = profile.graph;
+        if (source < 0 || target < 0) {
+            throw new IllegalArgumentException("Start or end location is not part of the graph");
+        }
+        double day = TrafficProfile.DAY_SECONDS;
+        double[][] times = new double[graph.nodeCount()][];     // Node -> label breakpoints (null = unreached)
+        double[][] values = new double[graph.nodeCount()][];    // Node -> arrival at each breakpoint
+        times[source] = new double[] { 0, day };
+        values[source] = new double[] { 0, day };
+
+        MinHeap heap = new MinHeap(graph.nodeCount());
+        heap.insertOrDecrease(source, 0);
+        int scanned = 0;
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            scanned++;
+            if (u != target && times[target] != null
+                && dominates(times[u], values[u], times[target], values[target])) {
+                continue; // Everything through u arrives no earlier than the target already does
+            }
+            for (int e = graph.firstOut[u]; e < graph.firstOut[u + 1]; e++) {
+                int v = graph.head[e];
+                if (v == source || Double.isInfinite(profile.baseSeconds[e])) continue;
+                double[][] linked = link(profile, e, times[u], values[u]);
+                if (times[v] == null) {
+                    times[v] = linked[0];
+                    values[v] = linked[1];
+                } else {
+                    double[][] merged = minimum(times[v], values[v], linked[0], linked[1]);
+                    if (merged == null) continue; // No improvement anywhere
+                    times[v] = merged[0];
+                    values[v] = merged[1];
+                }
+                heap.insertOrDecrease(v, values[v][0]);
+            }
+        }
+        if (times[target] == null) {
+            return null;
+        }
+        return new DepartureProfile(graph.name(source), graph.name(target), times[target], values[target], scanned);
+    }
+
+    /**
+     * Composes a label with edge e: departure -> arrival at the head of e.
+     * New breakpoints appear wherever the label reaches one of the edge's breakpoints.
+     */
+    static double[][] link(TrafficProfile profile, int edge, double[] times, double[] values) {
+        double[] outTimes = new double[times.length * 2];
+        double[] outValues = new double[times.length * 2];
+        int size = 0;
+        for (int i = 0; i < times.length; i++) {
+            if (size + 2 >= outTimes.length) {
+                outTimes = Arrays.copyOf(outTimes, outTimes.length * 2);
+                outValues = Arrays.copyOf(outValues, outValues.length * 2);
+            }
+            outTimes[size] = times[i];
+            outValues[size++] = profile.arrival(edge, values[i]);
+            if (i + 1 == times.length) break;
+
+            double y0 = values[i];
+            double y1 = values[i + 1];
+            for (double b = profile.nextBreakpoint(edge, y0); b < y1; b = profile.nextBreakpoint(edge, b)) {
+                if (size + 2 >= outTimes.length) {
+                    outTimes = Arrays.copyOf(outTimes, outTimes.length * 2);
+                    outValues = Arrays.copyOf(outValues, outValues.length * 2);
+                }
+                outTimes[size] = times[i] + (b - y0) / (y1 - y0) * (times[i + 1] - times[i]);
+                outValues[size++] = profile.arrival(edge, b);
+            }
+        }
+        return simplify(outTimes, outValues, size);
+    }
+
+    /**
+     * Pointwise minimum of two labels, or null if b is nowhere better than a.
+     */
+    static double[][] minimum(double[] aTimes, double[] aValues, double[] bTimes, double[] bValues) {
+        int capacity = (aTimes.length + bTimes.length) * 2;
+        double[] outTimes = new double[capacity];
+        double[] outValues = new double[capacity];
+        int size = 0;
+        boolean improved = false;
+
+        int i = 0, j = 0;
+        double previousT = Double.NaN, previousDiff = 0;
+        while (i < aTimes.length || j < bTimes.length) {
+            double t = j >= bTimes.length || (i < aTimes.length && aTimes[i] <= bTimes[j]) ? aTimes[i] : bTimes[j];
+            double a = evaluate(aTimes, aValues, aTimes.length, t);
+            double b = evaluate(bTimes, bValues, bTimes.length, t);
+            double diff = a - b;
+            if (size > 0 && ((previousDiff > EPSILON && diff < -EPSILON) || (previousDiff < -EPSILON && diff > EPSILON))) {
+                // The labels cross between the previous point and this one
+                double crossing = previousT + previousDiff / (previousDiff - diff) * (t - previousT);
+                outTimes[size] = crossing;
+                outValues[size++] = evaluate(aTimes, aValues, aTimes.length, crossing);
+            }
+            if (b < a - EPSILON) improved = true;
+            outTimes[size] = t;
+            outValues[size++] = Math.min(a, b);
+            previousT = t;
+            previousDiff = diff;
+            while (i < aTimes.length && aTimes[i] <= t) i++;
+            while (j < bTimes.length && bTimes[j] <= t) j++;
+        }
+        return improved ? simplify(outTimes, outValues, size) : null;
+    }
+
+    // True if label a is at least label b for every departure time
+    static boolean dominates(double[] aTimes, double[] aValues, double[] bTimes, double[] bValues) {
+        for (int i = 0; i < aTimes.length; i++) {
+            if (aValues[i] < evaluate(bTimes, bValues, bTimes.length, aTimes[i]) - EPSILON) return false;
+        }
+        for (int j = 0; j < bTimes.length; j++) {
+            if (evaluate(aTimes, aValues, aTimes.length, bTimes[j]) < bValues[j] - EPSILON) return false;
+        }
+        return true;
+    }
+
+    // Value of a piecewise-linear function at t (clamped to its range)
+    static double evaluate(double[] times, double[] values, int size, double t) {
+        if (t <= times[0]) return values[0];
+        if (t >= times[size - 1]) return values[size - 1];
+        int hi = Arrays.binarySearch(times, 0, size, t);
+        if (hi >= 0) return values[hi];
+        hi = -hi - 1;
+        int lo = hi - 1;
+        return values[lo] + (values[hi] - values[lo]) * (t - times[lo]) / (times[hi] - times[lo]);
+    }
+
+    // Drops repeated and collinear breakpoints
+    private static double[][] simplify(double[] times, double[] values, int size) {
+        double[] outTimes = new double[size];
+        double[] outValues = new double[size];
+        int count = 0;
+        for (int k = 0; k < size; k++) {
+            if (count > 0 && times[k] - outTimes[count - 1] <= EPSILON) {
+                outValues[count - 1] = Math.min(outValues[count - 1], values[k]);
+                continue;
+            }
+            if (count >= 2) {
+                double t0 = outTimes[count - 2], y0 = outValues[count - 2];
+                double t1 = outTimes[count - 1], y1 = outValues[count - 1];
+                double expected = y0 + (values[k] - y0) * (t1 - t0) / (times[k] - t0);
+                if (Math.abs(expected - y1) <= EPSILON) {
+                    count--; // The middle point lies on the line
+                }
+            }
+            outTimes[count] = times[k];
+            outValues[count++] = values[k];
+        }
+        return new double[][] { Arrays.copyOf(outTimes, count), Arrays.copyOf(outValues, count) };
+    }
+}
@@ -0,0 +1,203 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QueryBatcher - coalesces concurrent route queries by source
+ * ------------------------------------------------------------
+ * At lecture changeover hundreds of simultaneous requests start from the same
+ * few locations (Main Gate, JQB, Balme Library). Instead of one search per
+ * request, the batcher:
+ * - Collects requests for a short window (or until maxBatch are waiting).
+ * - Merges identical (start, end) requests so they are answered once.
+ * - Groups requests by start and runs one one-to-many search per start that
+ *   stops as soon as every requested destination is settled.
+ * - Runs the per-start searches in parallel and completes each request's own
+ *   CompletableFuture.
+ *
+ * Work per batch therefore grows with the number of distinct starts, not with
+ * the raw request count. Futures complete with null when no path exists.
+ *
+ * Every flush is tagged with the batch it was scheduled for; an early flush
+ * cancels the window timer, and a timer that fires anyway finds a newer batch
+ * and does nothing, so the next batch always gets its full window.
+ */
+public class QueryBatcher implements AutoCloseable {
+    static final long DEFAULT_WINDOW_MILLIS = 5;
+    static final int DEFAULT_MAX_BATCH = 1024;
+
+    /**
+     * Counters since the batcher was created.
+     */
+    public static class BatchStats {
+        public long requests;         // Requests submitted
+        public long uniqueQueries;    // Distinct (start, end) pairs after merging
+        public long searches;         // One-to-many searches run (distinct starts per batch)
+        public long batches;          // Batches flushed
+
+        public BatchStats(long requests, long uniqueQueries, long searches, long batches) {
+            this.requests = requests;
+            this.uniqueQueries = uniqueQueries;
+            this.searches = searches;
+            this.batches = batches;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d unique=%d searches=%d batches=%d", requests, uniqueQueries, searches, batches);
+        }
+    }
+
+    private final Graph graph;
+    private final long windowMillis;
+    private final int maxBatch;
+    private final ScheduledExecutorService timer;
+    private final Object lock = new Object();
+
+    // start -> end -> futures of the requests waiting for that pair
+    private Map<Nodes, Map<Nodes, List<CompletableFuture<SortingAlgorithms.Route>>>> pending = new LinkedHashMap<>();
+    private int pendingCount;
+    private long batchId;                      // Current batch; bumped when a flush takes it
+    private ScheduledFuture<?> windowFlush;    // Window timer of the current batch (null = none)
+    private boolean flushNow;                  // An early (maxBatch) flush of the current batch is queued
+    private boolean closed;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder uniqueQueries = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public QueryBatcher(Graph graph) {
+        this(graph, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * @param windowMillis How long the first request of a batch waits for company
+     * @param maxBatch     Flush early once this many requests are waiting
+     */
+    public QueryBatcher(Graph graph, long windowMillis, int maxBatch) {
+        this.graph = graph;
+        this.windowMillis = windowMillis;
+        this.maxBatch = maxBatch;
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "query-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a shortest-route query; the future completes when its batch is processed.
+     */
+    public CompletableFuture<SortingAlgorithms.Route> submit(Nodes start, Nodes end) {
+        CompletableFuture<SortingAlgorithms.Route> future = new CompletableFuture<>();
+        requests.increment();
+        synchronized (lock) {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("QueryBatcher is closed"));
+                return future;
+            }
+            pending.computeIfAbsent(start, s -> new LinkedHashMap<>())
+                .computeIfAbsent(end, e -> new ArrayList<>()).add(future);
+            pendingCount++;
+            long id = batchId;
+            if (pendingCount >= maxBatch && !flushNow) {
+                if (windowFlush != null) {
+                    windowFlush.cancel(false);
+                }
+                timer.execute(() -> flush(id));
+                flushNow = true;
+            } else if (windowFlush == null && !flushNow) {
+                windowFlush = timer.schedule(() -> flush(id), windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        return future;
+    }
+
+    public BatchStats stats() {
+        return new BatchStats(requests.sum(), uniqueQueries.sum(), searches.sum(), batches.sum());
+    }
+
+    /**
+     * Answers everything still waiting, then stops accepting requests.
+     */
+    @Override
+    public void close() {
+        long id;
+        synchronized (lock) {
+            closed = true;
+            id = batchId;
+        }
+        flush(id);
+        timer.shutdown();
+    }
+
+    // Takes the waiting requests of batch id and answers them, one search per distinct start
+    private void flush(long id) {
+        Map<Nodes, Map<Nodes, List<CompletableFuture<SortingAlgorithms.Route>>>> batch;
+        synchronized (lock) {
+            if (id != batchId) {
+                return; // Stale timer: that batch was already flushed early
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            pendingCount = 0;
+            batchId++;
+            windowFlush = null;
+            flushNow = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        batches.increment();
+        CompactGraph compact = graph.toCompact();
+        batch.entrySet().parallelStream().forEach(group -> answer(compact, group.getKey(), group.getValue()));
+    }
+
+    private void answer(CompactGraph compact, Nodes start, Map<Nodes, List<CompletableFuture<SortingAlgorithms.Route>>> targets) {
+        uniqueQueries.add(targets.size());
+        int source = compact.indexOf(start);
+        if (source < 0) {
+            IllegalArgumentException error = new IllegalArgumentException("Start location is not part of the graph: " + start.name);
+            targets.values().forEach(futures -> futures.forEach(f -> f.completeExceptionally(error)));
+            return;
+        }
+        try {
+            searches.increment();
+            SearchSpace space = SearchSpace.forCurrentThread(compact);
+            space.start(null, false);
+            space.addSource(source, 0.0);
+
+            // Settle until every requested destination is final
+            boolean[] wanted = new boolean[compact.nodeCount()];
+            int remaining = 0;
+            for (Nodes end : targets.keySet()) {
+                int target = compact.indexOf(end);
+                if (target >= 0 && !wanted[target]) {
+                    wanted[target] = true;
+                    remaining++;
+                }
+            }
+            int v;
+            while (remaining > 0 && (v = space.settleNext()) != -1) {
+                if (wanted[v]) remaining--;
+            }
+
+            for (Map.Entry<Nodes, List<CompletableFuture<SortingAlgorithms.Route>>> request : targets.entrySet()) {
+                int target = compact.indexOf(request.getKey());
+                SortingAlgorithms.Route route = null;
+                if (target >= 0 && space.isSettled(target)) {
+                    double distance = space.distance(target);
+                    route = new SortingAlgorithms.Route(compact.pathNames(space.pathTo(target)), distance, distance / 2, "Dijkstra");
+                }
+                for (CompletableFuture<SortingAlgorithms.Route> future : request.getValue()) {
+                    // Each request gets its own Route, so callers can adjust it independently
+                    future.complete(route == null ? null
+                        : new SortingAlgorithms.Route(new ArrayList<>(route.path), route.distance, route.time, route.algorithm));
+                }
+            }
+        } catch (RuntimeException e) {
+            targets.values().forEach(futures -> futures.forEach(f -> f.completeExceptionally(e)));
+        }
+    }
+}
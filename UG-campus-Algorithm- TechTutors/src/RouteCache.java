@@ -0,0 +1,429 @@
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * RouteCache - bounded, version-aware cache of route results
+ * -----------------------------------------------------------
+ * Kiosk and UI traffic is dominated by a few hundred origin-destination pairs,
+ * so repeated queries are answered from memory instead of re-running every engine.
+ *
+ * Features:
+ * - Keys are (start, end, cost profile, departure-time bucket, graph version).
+ * - Sharded: each shard is an access-ordered LinkedHashMap behind its own lock,
+ *   so concurrent queries for different pairs rarely contend.
+ * - TinyLFU-style admission on top of LRU: when a shard is full, a newcomer only
+ *   replaces the least recently used entry if a small frequency sketch says it is
+ *   requested more often. One-off queries therefore cannot flush the hot routes.
+ * - Invalidates itself when a key with a newer graph version arrives; results
+ *   computed against an older version are never stored.
+ * - Entries may register their edge dependencies (RouteDependencyIndex), so an
+ *   edge change evicts only the affected routes and the rest move to the new version.
+ * - Hit, miss, eviction and rejection counters.
+ */
+public class RouteCache<V> {
+    // Traffic factors change hourly (TrafficSimulator), so departures share a bucket per hour
+    static final int BUCKET_MINUTES = 60;
+    // Bucket used when a query ignores the departure time
+    static final int NO_DEPARTURE = -1;
+
+    /**
+     * Cache key. Profile names the cost model and any options that change the answer.
+     */
+    public static final class Key {
+        public final String start;
+        public final String end;
+        public final String profile;
+        public final int departureBucket;
+        public final long graphVersion;
+        private final int hash;
+
+        public Key(String start, String end, String profile, int departureBucket, long graphVersion) {
+            this.start = start;
+            this.end = end;
+            this.profile = profile;
+            this.departureBucket = departureBucket;
+            this.graphVersion = graphVersion;
+            // Version left out of the hash so an entry keeps its shard and popularity across versions
+            this.hash = Objects.hash(start, end, profile, departureBucket);
+        }
+
+        // Same query against another graph version
+        public Key withVersion(long version) {
+            return new Key(start, end, profile, departureBucket, version);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return hash == other.hash && departureBucket == other.departureBucket && graphVersion == other.graphVersion
+                && start.equals(other.start) && end.equals(other.end) && profile.equals(other.profile);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Snapshot of the cache counters.
+     */
+    public static class CacheStats {
+        public long hits;          // Lookups answered from the cache
+        public long misses;        // Lookups that had to compute
+        public long evictions;     // Entries replaced by more popular ones
+        public long rejections;    // Newcomers refused by the admission filter
+        public int size;           // Entries currently held
+
+        public CacheStats(long hits, long misses, long evictions, long rejections, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.rejections = rejections;
+            this.size = size;
+        }
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d (%.1f%% hit rate) evictions=%d rejections=%d size=%d",
+                hits, misses, hitRate() * 100, evictions, rejections, size);
+        }
+    }
+
+    /**
+     * One shard: LRU map plus its own frequency sketch, guarded by one lock.
+     */
+    private static final class Shard<V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<Key, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+        final FrequencySketch sketch;
+        final int capacity;
+
+        Shard(int capacity) {
+            this.capacity = capacity;
+            this.sketch = new FrequencySketch(capacity);
+        }
+    }
+
+    private final Shard<V>[] shards;
+    private final int shardMask;
+    private volatile long graphVersion = Long.MIN_VALUE;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final RouteDependencyIndex<Key> dependencies = new RouteDependencyIndex<>();
+
+    /**
+     * @param capacity Maximum number of entries across all shards
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public RouteCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        // Power-of-two shard count, at most one shard per 8 entries
+        int shardCount = Integer.highestOneBit(Math.max(1, Math.min(16, capacity / 8)));
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>((capacity + shardCount - 1 - i) / shardCount);
+        }
+        shardMask = shardCount - 1;
+    }
+
+    // Departure-time bucket for a key (NO_DEPARTURE when time is null)
+    public static int departureBucket(LocalTime departureTime) {
+        return departureTime == null ? NO_DEPARTURE : (departureTime.getHour() * 60 + departureTime.getMinute()) / BUCKET_MINUTES;
+    }
+
+    /**
+     * Cached value for the key, or null.
+     */
+    public V get(Key key) {
+        if (!observeVersion(key.graphVersion)) {
+            misses.increment();
+            return null;
+        }
+        Shard<V> shard = shardFor(key);
+        V value;
+        shard.lock.lock();
+        try {
+            shard.sketch.increment(key.hash);
+            value = shard.entries.get(key);
+        } finally {
+            shard.lock.unlock();
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Offers a value to the cache. It may be refused if the shard is full of more
+     * popular entries, or if it was computed against an outdated graph version.
+     */
+    public void put(Key key, V value) {
+        put(key, value, null);
+    }
+
+    /**
+     * Offers a value together with the edges and segments it depends on
+     * (null = unknown; such entries are dropped by any edge change).
+     */
+    public void put(Key key, V value, RouteDependencyIndex.Dependencies dependsOn) {
+        if (!observeVersion(key.graphVersion)) {
+            return;
+        }
+        Shard<V> shard = shardFor(key);
+        shard.lock.lock();
+        try {
+            if (key.graphVersion != graphVersion) {
+                return; // Graph changed while the value was being computed
+            }
+            if (shard.entries.containsKey(key) || shard.entries.size() < shard.capacity) {
+                shard.entries.put(key, value);
+                track(key, dependsOn);
+                return;
+            }
+            Map.Entry<Key, V> victim = shard.entries.entrySet().iterator().next();
+            if (shard.sketch.frequency(key.hash) > shard.sketch.frequency(victim.getKey().hash)) {
+                Key victimKey = victim.getKey();
+                shard.entries.remove(victimKey);
+                dependencies.remove(victimKey);
+                shard.entries.put(key, value);
+                track(key, dependsOn);
+                evictions.increment();
+            } else {
+                rejections.increment();
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached value or computes and offers it. The computation runs
+     * outside any lock, so two threads may occasionally compute the same key.
+     */
+    public V computeIfAbsent(Key key, Function<Key, V> compute) {
+        return computeIfAbsent(key, compute, null);
+    }
+
+    /**
+     * As computeIfAbsent, registering the dependencies of a freshly computed value.
+     */
+    public V computeIfAbsent(Key key, Function<Key, V> compute, Function<V, RouteDependencyIndex.Dependencies> dependsOn) {
+        V value = get(key);
+        if (value == null) {
+            value = compute.apply(key);
+            if (value != null) {
+                put(key, value, dependsOn == null ? null : dependsOn.apply(value));
+            }
+        }
+        return value;
+    }
+
+    // Drops every entry (counters are kept)
+    public void invalidateAll() {
+        for (Shard<V> shard : shards) {
+            shard.lock.lock();
+            try {
+                for (Key key : shard.entries.keySet()) {
+                    dependencies.remove(key);
+                }
+                shard.entries.clear();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Moves the cache from oldVersion to newVersion after an edge change: the
+     * affected keys (and entries without dependencies) are evicted, everything
+     * else is re-keyed to the new version. Returns false, leaving the cache alone,
+     * if it was not at oldVersion (it then invalidates itself as usual).
+     */
+    public boolean applyEdgeChange(long oldVersion, long newVersion, Collection<Key> affected) {
+        Set<Key> evict = new HashSet<>(affected);
+        synchronized (this) {
+            if (graphVersion != oldVersion || newVersion <= oldVersion) {
+                return false;
+            }
+            graphVersion = newVersion;
+            for (Shard<V> shard : shards) {
+                shard.lock.lock();
+                try {
+                    // Rebuild in access order so LRU order survives the re-keying
+                    List<Map.Entry<Key, V>> kept = new ArrayList<>(shard.entries.entrySet());
+                    shard.entries.clear();
+                    for (Map.Entry<Key, V> entry : kept) {
+                        Key key = entry.getKey();
+                        if (evict.contains(key) || !dependencies.contains(key)) {
+                            dependencies.remove(key);
+                            continue;
+                        }
+                        Key moved = key.withVersion(newVersion);
+                        dependencies.rename(key, moved);
+                        shard.entries.put(moved, entry.getValue());
+                    }
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cached keys whose routes use the edge from -> to, most requested first.
+     */
+    public List<Key> routesUsing(String from, String to) {
+        List<Key> keys = dependencies.routesUsing(from, to);
+        Map<Key, Integer> popularity = new HashMap<>();
+        for (Key key : keys) {
+            popularity.put(key, popularity(key));
+        }
+        keys.sort((a, b) -> Integer.compare(popularity.get(b), popularity.get(a)));
+        return keys;
+    }
+
+    // Dependency index of the cached entries
+    RouteDependencyIndex<Key> dependencies() {
+        return dependencies;
+    }
+
+    // Estimated request frequency of a key (0-15, decays over time)
+    public int popularity(Key key) {
+        Shard<V> shard = shardFor(key);
+        shard.lock.lock();
+        try {
+            return shard.sketch.frequency(key.hash);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private void track(Key key, RouteDependencyIndex.Dependencies dependsOn) {
+        if (dependsOn == null) {
+            dependencies.remove(key);
+        } else {
+            dependencies.register(key, dependsOn);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard<V> shard : shards) {
+            shard.lock.lock();
+            try {
+                size += shard.entries.size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), size());
+    }
+
+    /**
+     * Tracks the newest graph version seen. A newer version empties the cache;
+     * an older one means the caller is working from a stale graph (returns false).
+     */
+    private boolean observeVersion(long version) {
+        long current = graphVersion;
+        if (version == current) {
+            return true;
+        }
+        if (version < current) {
+            return false;
+        }
+        synchronized (this) {
+            if (version > graphVersion) {
+                graphVersion = version;
+                invalidateAll();
+            }
+            return version == graphVersion;
+        }
+    }
+
+    private Shard<V> shardFor(Key key) {
+        int h = key.hash;
+        return shards[(h ^ (h >>> 16)) & shardMask];
+    }
+
+    /**
+     * Count-min sketch with 4-bit saturating counters, four rows packed into longs.
+     * All counters are halved after a sample period so old popularity fades.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = { 0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+        private final long[] table;
+        private final int mask;
+        private final int samplePeriod;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            // 16 counters per long; roughly four counters per row per entry
+            int longs = Integer.highestOneBit(Math.max(4, capacity) - 1) << 1;
+            table = new long[longs];
+            mask = longs - 1;
+            samplePeriod = Math.max(10, 10 * capacity);
+        }
+
+        int frequency(int hash) {
+            int min = 15;
+            for (int row = 0; row < 4; row++) {
+                long h = spread(hash, row);
+                int counter = (int) ((table[(int) h & mask] >>> counterShift(h, row)) & 0xF);
+                min = Math.min(min, counter);
+            }
+            return min;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                long h = spread(hash, row);
+                int index = (int) h & mask;
+                int shift = counterShift(h, row);
+                if (((table[index] >>> shift) & 0xF) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= samplePeriod) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+                }
+                additions /= 2;
+            }
+        }
+
+        private static long spread(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[(row + 1) & 3];
+            return h ^ (h >>> 32);
+        }
+
+        // Each row owns four of the sixteen 4-bit counters in a long
+        private static int counterShift(long h, int row) {
+            return ((row << 2) + (int) ((h >>> 40) & 3)) << 2;
+        }
+    }
+}
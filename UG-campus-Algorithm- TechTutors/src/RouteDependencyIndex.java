@@ -0,0 +1,211 @@
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * RouteDependencyIndex - which cached routes depend on which edges
+ * -----------------------------------------------------------------
+ * A reverse index from walkways (location pairs) to cache entries, so one
+ * closure or weight change evicts only the routes it can affect instead of the
+ * whole cache.
+ *
+ * Layout:
+ * - Location names are interned to ints; an edge is the long (from << 32 | to).
+ * - Each edge has a BitSet posting list of entry ids. Entry ids are small and
+ *   recycled, so the bitmaps stay compact.
+ * - Each entry also records its "segments": (from, to, cost) pairs that must stay
+ *   shortest paths for the cached answer to remain correct.
+ *
+ * Which entries an edge change affects:
+ * - Closing or lengthening an edge: only routes that use it.
+ * - Reopening or shortening an edge u -> v to weight w: routes that use it, plus
+ *   any entry with a segment s -> t where d(s, u) + w + d(v, t) < cost, meaning
+ *   the edge now offers a shortcut.
+ */
+public class RouteDependencyIndex<K> {
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * What a cache entry depends on; filled in by whoever computes the entry.
+     */
+    public static class Dependencies {
+        public List<List<String>> paths = new ArrayList<>();   // Paths whose edges the entry uses
+        public List<String[]> segments = new ArrayList<>();    // {from, to} pairs that must stay shortest
+        public List<Double> segmentCosts = new ArrayList<>();  // Cost of each segment when cached
+        public boolean anyShortcut;                            // Evict on every edge decrease (e.g. ordered tours)
+
+        public Dependencies addPath(List<String> path) {
+            paths.add(path);
+            return this;
+        }
+
+        public Dependencies addSegment(String from, String to, double cost) {
+            segments.add(new String[] { from, to });
+            segmentCosts.add(cost);
+            return this;
+        }
+    }
+
+    private static final class Entry<K> {
+        final K key;
+        final long[] edges;
+        final int[] segmentStops;      // from0, to0, from1, to1, ...
+        final double[] segmentCosts;
+        final boolean anyShortcut;
+
+        Entry(K key, long[] edges, int[] segmentStops, double[] segmentCosts, boolean anyShortcut) {
+            this.key = key;
+            this.edges = edges;
+            this.segmentStops = segmentStops;
+            this.segmentCosts = segmentCosts;
+            this.anyShortcut = anyShortcut;
+        }
+    }
+
+    private final Map<String, Integer> locationIds = new HashMap<>();
+    private final List<String> locationNames = new ArrayList<>();
+    private final Map<Long, BitSet> postings = new HashMap<>();
+    private final Map<K, Integer> entryIds = new HashMap<>();
+    private final List<Entry<K>> entries = new ArrayList<>();   // Entry id -> entry (null = free)
+    private final ArrayDeque<Integer> freeIds = new ArrayDeque<>();
+
+    /**
+     * Records (or replaces) the dependencies of a cache entry.
+     */
+    public synchronized void register(K key, Dependencies dependencies) {
+        remove(key);
+
+        Set<Long> edgeSet = new LinkedHashSet<>();
+        for (List<String> path : dependencies.paths) {
+            for (int i = 0; i + 1 < path.size(); i++) {
+                edgeSet.add(edgeKey(intern(path.get(i)), intern(path.get(i + 1))));
+            }
+        }
+        long[] edges = new long[edgeSet.size()];
+        int e = 0;
+        for (long edge : edgeSet) edges[e++] = edge;
+
+        int segmentCount = dependencies.segments.size();
+        int[] stops = new int[segmentCount * 2];
+        double[] costs = new double[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            stops[2 * i] = intern(dependencies.segments.get(i)[0]);
+            stops[2 * i + 1] = intern(dependencies.segments.get(i)[1]);
+            costs[i] = dependencies.segmentCosts.get(i);
+        }
+
+        int id = freeIds.isEmpty() ? entries.size() : freeIds.pop();
+        Entry<K> entry = new Entry<>(key, edges, stops, costs, dependencies.anyShortcut);
+        if (id == entries.size()) {
+            entries.add(entry);
+        } else {
+            entries.set(id, entry);
+        }
+        entryIds.put(key, id);
+        for (long edge : edges) {
+            postings.computeIfAbsent(edge, k -> new BitSet()).set(id);
+        }
+    }
+
+    // Forgets an entry (no-op if unknown)
+    public synchronized void remove(K key) {
+        Integer id = entryIds.remove(key);
+        if (id == null) {
+            return;
+        }
+        for (long edge : entries.get(id).edges) {
+            BitSet posting = postings.get(edge);
+            posting.clear(id);
+            if (posting.isEmpty()) {
+                postings.remove(edge);
+            }
+        }
+        entries.set(id, null);
+        freeIds.push(id);
+    }
+
+    // Moves an entry's dependencies to a new key (used when unaffected entries survive a graph change)
+    public synchronized void rename(K oldKey, K newKey) {
+        Integer id = entryIds.remove(oldKey);
+        if (id == null) {
+            return;
+        }
+        Entry<K> old = entries.get(id);
+        entries.set(id, new Entry<>(newKey, old.edges, old.segmentStops, old.segmentCosts, old.anyShortcut));
+        entryIds.put(newKey, id);
+    }
+
+    public synchronized void clear() {
+        locationIds.clear();
+        locationNames.clear();
+        postings.clear();
+        entryIds.clear();
+        entries.clear();
+        freeIds.clear();
+    }
+
+    public synchronized boolean contains(K key) {
+        return entryIds.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return entryIds.size();
+    }
+
+    /**
+     * Keys of entries whose routes use the edge from -> to.
+     */
+    public synchronized List<K> routesUsing(String from, String to) {
+        List<K> keys = new ArrayList<>();
+        Integer u = locationIds.get(from);
+        Integer v = locationIds.get(to);
+        BitSet posting = u == null || v == null ? null : postings.get(edgeKey(u, v));
+        if (posting != null) {
+            for (int id = posting.nextSetBit(0); id >= 0; id = posting.nextSetBit(id + 1)) {
+                keys.add(entries.get(id).key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Keys of entries that an edge from -> to of the given (new, lower) weight could improve.
+     * @param toFrom Distance from a location to `from` (infinity if unreachable)
+     * @param fromTo Distance from `to` to a location (infinity if unreachable)
+     */
+    public synchronized List<K> routesImprovedBy(String from, String to, double weight,
+        ToDoubleFunction<String> toFrom, ToDoubleFunction<String> fromTo) {
+        List<K> keys = new ArrayList<>();
+        double[] before = new double[locationNames.size()];
+        double[] after = new double[locationNames.size()];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = toFrom.applyAsDouble(locationNames.get(i));
+            after[i] = fromTo.applyAsDouble(locationNames.get(i));
+        }
+        for (Entry<K> entry : entries) {
+            if (entry == null) continue;
+            boolean affected = entry.anyShortcut;
+            for (int i = 0; i < entry.segmentCosts.length && !affected; i++) {
+                double viaEdge = before[entry.segmentStops[2 * i]] + weight + after[entry.segmentStops[2 * i + 1]];
+                affected = viaEdge < entry.segmentCosts[i] - EPSILON;
+            }
+            if (affected) {
+                keys.add(entry.key);
+            }
+        }
+        return keys;
+    }
+
+    private int intern(String location) {
+        Integer id = locationIds.get(location);
+        if (id == null) {
+            id = locationNames.size();
+            locationIds.put(location, id);
+            locationNames.add(location);
+        }
+        return id;
+    }
+
+    private static long edgeKey(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+}
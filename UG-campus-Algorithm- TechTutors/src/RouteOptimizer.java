@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.concurrent.*;
 
 public class RouteOptimizer {
 
@@ -17,12 +18,59 @@ public class RouteOptimizer {
         public Map<String, Double> algorithmPerformance;
         public List<String> landmarks;
         public double trafficFactor;
+        public boolean cached; // True when served from the route cache; algorithmPerformance is then empty
+        public boolean complete; // False if an engine timed out, failed or was interrupted; such results are never cached
 
         public RouteAnalysis() {
             this.routes = new ArrayList<>();
             this.algorithmPerformance = new HashMap<>();
             this.landmarks = new ArrayList<>();
             this.trafficFactor = 1.0;
+            this.complete = true;
+        }
+    }
+
+    /**
+     * How findOptimalRoutes runs its engines.
+     * - SEQUENTIAL:  one after another on the calling thread.
+     * - FIRST_WINS:  concurrently; the first engine to return a route wins and the rest are cancelled.
+     * - COMPARE_ALL: concurrently; every engine that finishes within its timeout is reported.
+     */
+    public enum ExecutionMode { SEQUENTIAL, FIRST_WINS, COMPARE_ALL }
+
+    // Per-engine time limit used by the concurrent modes
+    static final long DEFAULT_ENGINE_TIMEOUT_MS = 2000;
+
+    // Dedicated daemon pool for concurrent engine runs (shared with RouteStream)
+    static final ExecutorService ENGINE_POOL = Executors.newFixedThreadPool(
+        Math.max(3, Runtime.getRuntime().availableProcessors()), task -> {
+            Thread thread = new Thread(task, "route-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    // Entries kept per graph by the route result cache
+    static final int ROUTE_CACHE_CAPACITY = 512;
+
+    // One result cache per graph; weak keys so discarded graphs release their caches
+    private static final Map<Graph, RouteCache<RouteAnalysis>> ROUTE_CACHES =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    // Optional second-level cache on disk, shared across restarts (null = memory only)
+    private static volatile PersistentRouteCache persistentCache;
+
+    /**
+     * Route produced by one engine, with its own run time.
+     */
+    private static class EngineResult {
+        String engine;
+        SortingAlgorithms.Route route;   // null when the engine found no path
+        double millis;                   // Wall-clock run time (nanosecond resolution)
+
+        EngineResult(String engine, SortingAlgorithms.Route route, double millis) {
+            this.engine = engine;
+            this.route = route;
+            this.millis = millis;
         }
     }
 
@@ -31,48 +79,216 @@ public class RouteOptimizer {
      * Supports optional landmark consideration.
      */
     public static RouteAnalysis findOptimalRoutes(Graph graph, Nodes start, Nodes end, List<String> landmarks) {
-        RouteAnalysis analysis = new RouteAnalysis();
+        return findOptimalRoutes(graph, start, end, landmarks, ExecutionMode.SEQUENTIAL, DEFAULT_ENGINE_TIMEOUT_MS);
+    }
+
+    /**
+     * Computes optimal routes using Dijkstra, Floyd-Warshall and A* in the given execution mode.
+     * Results are cached per graph version; every call gets its own copy. A copy served
+     * from the in-memory or on-disk cache is marked cached and carries no engine timings,
+     * since none of the engines ran for it. Incomplete runs (an engine timed out, failed
+     * or the caller was interrupted) are returned but not cached, in memory or on disk.
+     * @param timeoutMillis Per-engine time limit for the concurrent modes
+     */
+    public static RouteAnalysis findOptimalRoutes(Graph graph, Nodes start, Nodes end, List<String> landmarks,
+        ExecutionMode mode, long timeoutMillis) {
+        RouteCache.Key key = new RouteCache.Key(start.name, end.name, mode + ":" + String.join(",", landmarks),
+            RouteCache.NO_DEPARTURE, graph.getVersion());
+        RouteCache<RouteAnalysis> cache = routeCache(graph);
+        RouteAnalysis analysis = cache.get(key);
+        if (analysis != null) {
+            return copyOf(analysis, true);
+        }
+
+        PersistentRouteCache disk = persistentCache;
+        long fingerprint = disk == null ? 0 : graph.toCompact().fingerprint();
+        if (disk != null) {
+            try {
+                analysis = disk.get(key, fingerprint);
+            } catch (RuntimeException e) {
+                // The disk cache is best effort (e.g. a damaged file); compute instead
+            }
+        }
+        boolean computed = analysis == null;
+        if (computed) {
+            analysis = computeOptimalRoutes(graph, start, end, new ArrayList<>(landmarks), mode, timeoutMillis);
+            if (!analysis.complete) {
+                return analysis; // Partial answer: a later call (maybe with more time) computes it again
+            }
+            if (disk != null) {
+                try {
+                    disk.put(key, fingerprint, analysis);
+                } catch (java.io.IOException | RuntimeException e) {
+                    // The disk cache is best effort (e.g. the file is locked by another
+                    // instance in this JVM); the computed result is still returned
+                }
+            }
+        }
+        cache.put(key, analysis, dependenciesOf(start, end, landmarks, analysis));
+        return copyOf(analysis, !computed);
+    }
+
+    /**
+     * Edges and segments a cached analysis depends on. The unconstrained routes stay
+     * valid while start -> end keeps its cost; landmark tours may change their stop
+     * order, so they are evicted by any edge that gets cheaper.
+     */
+    private static RouteDependencyIndex.Dependencies dependenciesOf(Nodes start, Nodes end, List<String> landmarks, RouteAnalysis analysis) {
+        RouteDependencyIndex.Dependencies dependencies = new RouteDependencyIndex.Dependencies();
+        double best = Double.POSITIVE_INFINITY;
+        for (SortingAlgorithms.Route route : analysis.routes) {
+            dependencies.addPath(route.path);
+            if (!route.algorithm.startsWith("Landmark")) {
+                best = Math.min(best, route.distance);
+            }
+        }
+        dependencies.addSegment(start.name, end.name, best);
+        dependencies.anyShortcut = !landmarks.isEmpty();
+        return dependencies;
+    }
+
+    /**
+     * Closes the walkway from -> to (both directions on an undirected graph).
+     * Only cached routes that used it are evicted; their keys are returned.
+     */
+    public static List<RouteCache.Key> closeEdge(Graph graph, Nodes from, Nodes to) {
+        RouteCache<RouteAnalysis> cache = routeCache(graph);
+        long oldVersion = graph.getVersion();
+        if (!graph.removeEdge(from, to)) {
+            return new ArrayList<>();
+        }
+        Set<RouteCache.Key> affected = new LinkedHashSet<>(routesAffectedBy(graph, from, to));
+        cache.applyEdgeChange(oldVersion, graph.getVersion(), affected);
+        return new ArrayList<>(affected);
+    }
+
+    /**
+     * Reopens or re-weights the walkway from -> to. Routes using it are evicted; if
+     * it got cheaper, so are cached routes it now offers a shortcut for. Returns the
+     * evicted keys.
+     */
+    public static List<RouteCache.Key> setEdgeWeight(Graph graph, Nodes from, Nodes to, double weight) {
+        RouteCache<RouteAnalysis> cache = routeCache(graph);
+        CompactGraph before = graph.toCompact();
+        long oldVersion = before.getVersion();
+        int u = before.indexOf(from);
+        int v = before.indexOf(to);
+        int edge = u < 0 || v < 0 ? -1 : before.findEdge(u, v);
+        double oldWeight = edge < 0 ? Double.POSITIVE_INFINITY : before.edgeWeight(edge);
+
+        graph.addEdge(from, to, weight);
+
+        Set<RouteCache.Key> affected = new LinkedHashSet<>(routesAffectedBy(graph, from, to));
+        if (weight < oldWeight) {
+            CompactGraph after = graph.toCompact();
+            affected.addAll(shortcutsThrough(cache, after, from, to, weight));
+            if (!graph.isDirected()) {
+                affected.addAll(shortcutsThrough(cache, after, to, from, weight));
+            }
+        }
+        cache.applyEdgeChange(oldVersion, graph.getVersion(), affected);
+        return new ArrayList<>(affected);
+    }
+
+    /**
+     * Cached routes that use the walkway from -> to (either direction on an
+     * undirected graph), most requested first: the routes an incident there impacts.
+     */
+    public static List<RouteCache.Key> routesAffectedBy(Graph graph, Nodes from, Nodes to) {
+        RouteCache<RouteAnalysis> cache = routeCache(graph);
+        List<RouteCache.Key> keys = new ArrayList<>(cache.routesUsing(from.name, to.name));
+        if (!graph.isDirected()) {
+            for (RouteCache.Key key : cache.routesUsing(to.name, from.name)) {
+                if (!keys.contains(key)) keys.add(key);
+            }
+            keys.sort((a, b) -> Integer.compare(cache.popularity(b), cache.popularity(a)));
+        }
+        return keys;
+    }
+
+    // Cached entries that the edge from -> to at the given weight would shorten
+    private static List<RouteCache.Key> shortcutsThrough(RouteCache<RouteAnalysis> cache, CompactGraph graph, Nodes from, Nodes to, double weight) {
+        SearchSpace toFrom = new SearchSpace(graph);
+        toFrom.start(null, true);
+        toFrom.addSource(graph.indexOf(from), 0.0);
+        while (toFrom.settleNext() != -1) {
+            // Distances from every node to `from`
+        }
+        SearchSpace fromTo = new SearchSpace(graph);
+        fromTo.start(null, false);
+        fromTo.addSource(graph.indexOf(to), 0.0);
+        while (fromTo.settleNext() != -1) {
+            // Distances from `to` to every node
+        }
+        return cache.dependencies().routesImprovedBy(from.name, to.name, weight,
+            name -> graph.indexOf(name) < 0 ? Double.POSITIVE_INFINITY : toFrom.distance(graph.indexOf(name)),
+            name -> graph.indexOf(name) < 0 ? Double.POSITIVE_INFINITY : fromTo.distance(graph.indexOf(name)));
+    }
+
+    /**
+     * Backs the in-memory route cache with a memory-mapped file (null to detach).
+     * Routes stored by an earlier run on the same graph are served immediately.
+     */
+    public static void usePersistentCache(PersistentRouteCache cache) {
+        persistentCache = cache;
+    }
+
+    // Route result cache for the graph (created on first use)
+    static RouteCache<RouteAnalysis> routeCache(Graph graph) {
+        return ROUTE_CACHES.computeIfAbsent(graph, g -> new RouteCache<>(ROUTE_CACHE_CAPACITY));
+    }
+
+    /**
+     * Hit/miss statistics of the route result cache for the graph.
+     */
+    public static RouteCache.CacheStats routeCacheStats(Graph graph) {
+        return routeCache(graph).stats();
+    }
 
-        // Measure time for Dijkstra algorithm
-        long startTime = System.currentTimeMillis();
-        String dijkstraPath = graph.shortestPath(start, end);
-        long dijkstraTime = System.currentTimeMillis() - startTime;
-
-        // Measure time for Floyd-Warshall algorithm
-        startTime = System.currentTimeMillis();
-        FloydWarshall.ShortestPathResult floydResult = FloydWarshall.floydWarshall(graph, start, end);
-        long floydTime = System.currentTimeMillis() - startTime;
-
-        // Measure time for A* algorithm
-        startTime = System.currentTimeMillis();
-        AStarSearch.AStarResult aStarResult = AStarSearch.aStarSearch(graph, start, end);
-        long aStarTime = System.currentTimeMillis() - startTime;
-
-        // Store algorithm performance
-        analysis.algorithmPerformance.put("Dijkstra", (double) dijkstraTime);
-        analysis.algorithmPerformance.put("Floyd-Warshall", (double) floydTime);
-        analysis.algorithmPerformance.put("A*", (double) aStarTime);
-
-        // Add Dijkstra route if path exists
-        if (!dijkstraPath.contains("There isn't a path")) {
-            String[] dijkstraParts = dijkstraPath.split("----");
-            List<String> dijkstraPathList = new ArrayList<>();
-            for (String part : dijkstraParts) {
-                dijkstraPathList.add(part.trim());
+    // Deep copy, so callers (e.g. optimizeForTraffic) can adjust routes without touching the cache.
+    // A cache hit drops the timings: they describe the run that filled the entry, not this call.
+    private static RouteAnalysis copyOf(RouteAnalysis source, boolean cached) {
+        RouteAnalysis copy = new RouteAnalysis();
+        for (SortingAlgorithms.Route route : source.routes) {
+            SortingAlgorithms.Route routeCopy = new SortingAlgorithms.Route(new ArrayList<>(route.path), route.distance, route.time, route.algorithm);
+            copy.routes.add(routeCopy);
+            if (route == source.optimalRoute) {
+                copy.optimalRoute = routeCopy;
             }
-            double dijkstraDistance = extractDistance(dijkstraPath);
-            analysis.routes.add(new SortingAlgorithms.Route(dijkstraPathList, dijkstraDistance, dijkstraDistance / 2, "Dijkstra"));
         }
+        if (!cached) {
+            copy.algorithmPerformance.putAll(source.algorithmPerformance);
+        }
+        copy.cached = cached;
+        copy.complete = source.complete;
+        copy.landmarks = new ArrayList<>(source.landmarks);
+        copy.trafficFactor = source.trafficFactor;
+        return copy;
+    }
 
-        // Add Floyd-Warshall route if path exists
-        if (!floydResult.path.isEmpty()) {
-            double floydDistance = floydResult.totalDistance;
-            analysis.routes.add(new SortingAlgorithms.Route(floydResult.path, floydDistance, floydDistance / 2, "Floyd-Warshall"));
+    private static RouteAnalysis computeOptimalRoutes(Graph graph, Nodes start, Nodes end, List<String> landmarks,
+        ExecutionMode mode, long timeoutMillis) {
+        RouteAnalysis analysis = new RouteAnalysis();
+        Map<String, Callable<SortingAlgorithms.Route>> engines = routeEngines(graph, start, end);
+
+        List<EngineResult> results;
+        switch (mode) {
+            case FIRST_WINS: results = runFirstWins(engines, timeoutMillis); break;
+            case COMPARE_ALL: results = runCompareAll(engines, timeoutMillis); break;
+            default: results = runSequential(engines); break;
         }
 
-        // Add A* route if path exists
-        if (!aStarResult.path.isEmpty()) {
-            analysis.routes.add(new SortingAlgorithms.Route(aStarResult.path, aStarResult.totalDistance, aStarResult.totalDistance / 2, "A*"));
+        // Every engine answered (FIRST_WINS: or one found a route); otherwise a
+        // timeout, failure or interrupt cut the run short
+        analysis.complete = results.size() == engines.size()
+            || (mode == ExecutionMode.FIRST_WINS && results.stream().anyMatch(r -> r.route != null));
+
+        // Store algorithm performance and every route that was found
+        for (EngineResult result : results) {
+            analysis.algorithmPerformance.put(result.engine, result.millis);
+            if (result.route != null) {
+                analysis.routes.add(result.route);
+            }
         }
 
         // Include routes with landmark constraints
@@ -91,23 +307,181 @@ public class RouteOptimizer {
     }
 
     /**
-     * Extracts the distance value from a formatted path string.
+     * The shortest-path engines compared by findOptimalRoutes. Each returns a route or null.
+     * Dijkstra runs on the CompactGraph with a thread-local workspace, because
+     * Graph.shortestPath keeps its state in the shared Nodes and cannot run concurrently.
+     */
+    static Map<String, Callable<SortingAlgorithms.Route>> routeEngines(Graph graph, Nodes start, Nodes end) {
+        Map<String, Callable<SortingAlgorithms.Route>> engines = new LinkedHashMap<>();
+
+        engines.put("Dijkstra", () -> {
+            CompactGraph compact = graph.toCompact();
+            int target = compact.indexOf(end);
+            SearchSpace space = SearchSpace.forCurrentThread(compact);
+            space.start(null, false);
+            space.addSource(compact.indexOf(start), 0.0);
+            int v;
+            while ((v = space.settleNext()) != -1 && v != target) {
+                // Run until the destination is settled
+            }
+            if (v != target || start == end) {
+                return null;
+            }
+            double distance = space.distance(target);
+            return new SortingAlgorithms.Route(compact.pathNames(space.pathTo(target)), distance, distance / 2, "Dijkstra");
+        });
+
+        engines.put("Floyd-Warshall", () -> {
+            FloydWarshall.ShortestPathResult floydResult = FloydWarshall.floydWarshall(graph, start, end);
+            if (floydResult.path.isEmpty()) {
+                return null;
+            }
+            return new SortingAlgorithms.Route(floydResult.path, floydResult.totalDistance, floydResult.totalDistance / 2, "Floyd-Warshall");
+        });
+
+        engines.put("A*", () -> {
+            AStarSearch.AStarResult aStarResult = AStarSearch.aStarSearch(graph, start, end);
+            if (aStarResult.path.isEmpty()) {
+                return null;
+            }
+            return new SortingAlgorithms.Route(aStarResult.path, aStarResult.totalDistance, aStarResult.totalDistance / 2, "A*");
+        });
+
+        return engines;
+    }
+
+    /**
+     * Explain mode: runs every engine once with tracing on and returns one trace per
+     * engine (export with SearchTrace.toJson()). Meant for investigating slow pairs,
+     * not for serving queries.
+     */
+    public static Map<String, SearchTrace> explainRoute(Graph graph, Nodes start, Nodes end) {
+        Map<String, SearchTrace> traces = new LinkedHashMap<>();
+        CompactGraph compact = graph.toCompact();
+
+        SearchTrace dijkstra = new SearchTrace("Dijkstra", compact);
+        dijkstra.beginPhase("search");
+        SearchSpace space = new SearchSpace(compact);
+        space.setTrace(dijkstra);
+        space.start(null, false);
+        space.addSource(compact.indexOf(start), 0.0);
+        int target = compact.indexOf(end);
+        int v;
+        while ((v = space.settleNext()) != -1 && v != target) {
+            // Run until the destination is settled
+        }
+        dijkstra.endPhase();
+        traces.put("Dijkstra", dijkstra);
+
+        SearchTrace classic = new SearchTrace("Graph.shortestPath", compact);
+        classic.beginPhase("search");
+        graph.resetNodesVisited(); // shortestPath keeps visited flags on the shared nodes
+        graph.shortestPath(start, end, classic);
+        graph.resetNodesVisited();
+        classic.endPhase();
+        traces.put("Graph.shortestPath", classic);
+
+        SearchTrace floyd = new SearchTrace("Floyd-Warshall", compact);
+        FloydWarshall.floydWarshall(graph, start, end, floyd);
+        traces.put("Floyd-Warshall", floyd);
+
+        SearchTrace aStar = new SearchTrace("A*", compact);
+        aStar.beginPhase("search");
+        AStarSearch.aStarSearch(graph, start, end, aStar);
+        aStar.endPhase();
+        traces.put("A*", aStar);
+
+        return traces;
+    }
+
+    // Wraps an engine so it measures its own run time
+    private static Callable<EngineResult> timed(String name, Callable<SortingAlgorithms.Route> engine) {
+        return () -> {
+            long startTime = System.nanoTime();
+            SortingAlgorithms.Route route = engine.call();
+            return new EngineResult(name, route, (System.nanoTime() - startTime) / 1_000_000.0);
+        };
+    }
+
+    private static List<EngineResult> runSequential(Map<String, Callable<SortingAlgorithms.Route>> engines) {
+        List<EngineResult> results = new ArrayList<>();
+        for (Map.Entry<String, Callable<SortingAlgorithms.Route>> engine : engines.entrySet()) {
+            try {
+                results.add(timed(engine.getKey(), engine.getValue()).call());
+            } catch (Exception e) {
+                // A failing engine should not hide the others' routes
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs all engines concurrently and returns the first route found; the other engines are cancelled.
      */
-    private static double extractDistance(String pathString) {
+    private static List<EngineResult> runFirstWins(Map<String, Callable<SortingAlgorithms.Route>> engines, long timeoutMillis) {
+        CompletionService<EngineResult> completion = new ExecutorCompletionService<>(ENGINE_POOL);
+        List<Future<EngineResult>> futures = new ArrayList<>();
+        for (Map.Entry<String, Callable<SortingAlgorithms.Route>> engine : engines.entrySet()) {
+            futures.add(completion.submit(timed(engine.getKey(), engine.getValue())));
+        }
+
+        List<EngineResult> results = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
         try {
-            String[] parts = pathString.split("Distance:");
-            if (parts.length > 1) {
-                String distancePart = parts[1].split("Time")[0].trim();
-                return Double.parseDouble(distancePart);
+            for (int pending = futures.size(); pending > 0; pending--) {
+                Future<EngineResult> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    break; // Out of time
+                }
+                try {
+                    EngineResult result = done.get();
+                    results.add(result);
+                    if (result.route != null) {
+                        break; // First correct answer wins
+                    }
+                } catch (ExecutionException e) {
+                    // Engine failed; keep waiting for the others
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<EngineResult> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs all engines concurrently and collects every result that arrives within its timeout.
+     */
+    private static List<EngineResult> runCompareAll(Map<String, Callable<SortingAlgorithms.Route>> engines, long timeoutMillis) {
+        List<Future<EngineResult>> futures = new ArrayList<>();
+        List<Long> deadlines = new ArrayList<>();
+        for (Map.Entry<String, Callable<SortingAlgorithms.Route>> engine : engines.entrySet()) {
+            deadlines.add(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+            futures.add(ENGINE_POOL.submit(timed(engine.getKey(), engine.getValue())));
+        }
+
+        List<EngineResult> results = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            Future<EngineResult> future = futures.get(i);
+            try {
+                results.add(future.get(Math.max(0, deadlines.get(i) - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException | ExecutionException e) {
+                future.cancel(true); // Too slow or failed: leave it out of the comparison
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                break;
             }
-        } catch (Exception e) {
-            return 0.0;
         }
-        return 0.0;
+        return results;
     }
 
     /**
-     * Finds multiple route options using A* algorithm and returns the shortest routes.
+     * Finds multiple route options (k shortest loopless paths) and returns the shortest routes.
      */
     public static RouteAnalysis findMultipleRouteOptions(Graph graph, Nodes start, Nodes end, int numOptions) {
         RouteAnalysis analysis = new RouteAnalysis();
@@ -115,7 +489,7 @@ public class RouteOptimizer {
         List<AStarSearch.AStarResult> multiplePaths = AStarSearch.findMultiplePaths(graph, start, end, numOptions);
 
         for (AStarSearch.AStarResult result : multiplePaths) {
-            analysis.routes.add(new SortingAlgorithms.Route(result.path, result.totalDistance, result.totalDistance / 2, "A* Multiple"));
+            analysis.routes.add(new SortingAlgorithms.Route(result.path, result.totalDistance, result.totalDistance / 2, "K-Shortest"));
         }
 
         // Sort by distance and set optimal route
@@ -125,6 +499,18 @@ public class RouteOptimizer {
         return analysis;
     }
 
+    /**
+     * Fastest route for a profile at a departure time, searched on compiled edge
+     * costs (that hour's traffic, the weather and the profile's accessibility are
+     * already in every edge time). Returns null if there is no path.
+     * @param profile CompiledCostModel.STANDARD or an accessibility type (e.g. "wheelchair")
+     */
+    public static SortingAlgorithms.Route findFastestRoute(Graph graph, Nodes start, Nodes end, String profile,
+        java.time.LocalTime departureTime) {
+        CompiledCostModel costs = CompiledCostModel.cached(graph.toCompact(), profile, departureTime.getHour());
+        return costs.route(start.name, end.name, profile, departureTime);
+    }
+
     /**
      * Adjusts route times based on a traffic factor and determines optimal route.
      */
@@ -188,51 +574,30 @@ public class RouteOptimizer {
             report.append("Traffic Factor: ").append(analysis.trafficFactor).append("x\n");
         }
 
-        report.append("\nAlgorithm Performance (ms):\n");
-        for (Map.Entry<String, Double> entry : analysis.algorithmPerformance.entrySet()) {
-            report.append("- ").append(entry.getKey()).append(": ").append(entry.getValue()).append("ms\n");
+        if (analysis.cached) {
+            report.append("\nAlgorithm Performance: served from cache, no engines ran\n");
+        } else {
+            report.append("\nAlgorithm Performance (ms):\n");
+            for (Map.Entry<String, Double> entry : analysis.algorithmPerformance.entrySet()) {
+                report.append("- ").append(entry.getKey()).append(": ").append(entry.getValue()).append("ms\n");
+            }
         }
 
         return report.toString();
     }
 
     /**
-     * Divide and Conquer approach: splits nodes into two halves and combines partial paths.
-     * Returns top 3 shortest combined routes.
+     * Divide and Conquer approach: splits each route at an intermediate (via) node and
+     * combines the start -> via and via -> end halves. Both halves come from one forward
+     * and one backward search tree (ViaRoutes), filtered for bounded stretch, limited
+     * sharing and local optimality. Returns the top 3 combined routes.
      */
     public static List<SortingAlgorithms.Route> applyDivideAndConquer(Graph graph, Nodes start, Nodes end) {
         List<SortingAlgorithms.Route> routes = new ArrayList<>();
+        CompactGraph compact = graph.toCompact();
 
-        Set<Nodes> allNodes = graph.getNodes();
-        List<Nodes> nodesList = new ArrayList<>(allNodes);
-        int mid = nodesList.size() / 2;
-
-        List<Nodes> firstHalf = nodesList.subList(0, mid);
-        List<Nodes> secondHalf = nodesList.subList(mid, nodesList.size());
-
-        for (Nodes intermediate : firstHalf) {
-            if (!intermediate.equals(start) && !intermediate.equals(end)) {
-                String path1 = graph.shortestPath(start, intermediate);
-                String path2 = graph.shortestPath(intermediate, end);
-
-                if (!path1.contains("There isn't a path") && !path2.contains("There isn't a path")) {
-                    double distance1 = extractDistance(path1);
-                    double distance2 = extractDistance(path2);
-                    double totalDistance = distance1 + distance2;
-
-                    List<String> combinedPath = new ArrayList<>();
-                    String[] parts1 = path1.split("----");
-                    for (String part : parts1) {
-                        combinedPath.add(part.trim());
-                    }
-                    String[] parts2 = path2.split("----");
-                    for (int i = 1; i < parts2.length; i++) {
-                        combinedPath.add(parts2[i].trim());
-                    }
-
-                    routes.add(new SortingAlgorithms.Route(combinedPath, totalDistance, totalDistance / 2, "Divide-Conquer"));
-                }
-            }
+        for (KShortestPaths.PathResult result : ViaRoutes.find(compact, compact.indexOf(start), compact.indexOf(end), 2, null)) {
+            routes.add(new SortingAlgorithms.Route(compact.pathNames(result.nodes), result.cost, result.cost / 2, "Divide-Conquer"));
         }
 
         SortingAlgorithms.sortByDistance(routes);
@@ -0,0 +1,277 @@
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * RouteStream - progressive route results as a Flow.Publisher
+ * ------------------------------------------------------------
+ * RouteOptimizer.findOptimalRoutes returns only after every engine and every
+ * alternative has finished. This publisher emits results as they become available,
+ * so a UI can draw the first route within milliseconds:
+ * 1. FEASIBLE:    the first route any engine returns.
+ * 2. IMPROVED:    a later engine's route that is shorter than the best so far.
+ *    ALTERNATIVE: a different path (later engines, then k-shortest alternatives).
+ * 3. TRAFFIC, WEATHER, ACCESSIBILITY: enrichment of the best route.
+ *
+ * Each subscriber gets its own run (a cold publisher). Delivery goes through a
+ * SubmissionPublisher with a small buffer. A subscriber that stops requesting
+ * pauses the producer (backpressure). Cancelling the subscription cancels the
+ * engines and the k-shortest search at once; a producer waiting for an engine
+ * or for buffer space notices within POLL_MILLIS and ends the run.
+ *
+ * Threads are bounded: producers run on a fixed pool of PRODUCERS threads (later
+ * runs queue) and engines on RouteOptimizer's fixed engine pool.
+ */
+public class RouteStream implements Flow.Publisher<RouteStream.RouteUpdate> {
+    // Updates buffered per subscriber before the producer waits
+    static final int BUFFER_SIZE = 16;
+    // Number of k-shortest alternatives to look for after the engines finish
+    static final int ALTERNATIVES = 4;
+    // Concurrent producer runs; further subscribers wait for a free producer
+    static final int PRODUCERS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    // How often a waiting producer checks whether its subscriber is still there
+    static final long POLL_MILLIS = 50;
+    private static final double EPSILON = 1e-9;
+
+    // Producers wait on backpressure, so they get their own daemon pool
+    private static final ExecutorService STREAM_POOL = Executors.newFixedThreadPool(PRODUCERS, task -> {
+        Thread thread = new Thread(task, "route-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public enum Kind { FEASIBLE, IMPROVED, ALTERNATIVE, TRAFFIC, WEATHER, ACCESSIBILITY }
+
+    /**
+     * One progressive result. Only the enrichment field matching the kind is set.
+     */
+    public static class RouteUpdate {
+        public Kind kind;
+        public SortingAlgorithms.Route route;                           // Route the update is about
+        public TrafficSimulator.TimeBasedRoute traffic;                 // TRAFFIC
+        public WeatherIntegration.WeatherAdjustedRoute weather;         // WEATHER
+        public AccessibilityFeatures.AccessibilityRoute accessibility;  // ACCESSIBILITY
+        public double elapsedMillis;                                    // Time since the run started
+
+        public RouteUpdate(Kind kind, SortingAlgorithms.Route route, double elapsedMillis) {
+            this.kind = kind;
+            this.route = route;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s after %.2fms: %s", kind, elapsedMillis, route);
+        }
+    }
+
+    private final Graph graph;
+    private final Nodes start;
+    private final Nodes end;
+    private final LocalTime departureTime;
+    private final String accessibilityType;
+
+    /**
+     * @param departureTime     Departure for the traffic enrichment (null = now)
+     * @param accessibilityType Profile for the accessibility enrichment (null = "standard")
+     */
+    public RouteStream(Graph graph, Nodes start, Nodes end, LocalTime departureTime, String accessibilityType) {
+        this.graph = graph;
+        this.start = start;
+        this.end = end;
+        this.departureTime = departureTime;
+        this.accessibilityType = accessibilityType == null ? "standard" : accessibilityType;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super RouteUpdate> subscriber) {
+        SubmissionPublisher<RouteUpdate> publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), BUFFER_SIZE);
+        Run run = new Run();
+        publisher.subscribe(new CancelAwareSubscriber(subscriber, run));
+        STREAM_POOL.execute(() -> produce(publisher, run));
+    }
+
+    /**
+     * Runs the engines, alternatives and enrichment for one subscriber.
+     */
+    private void produce(SubmissionPublisher<RouteUpdate> publisher, Run run) {
+        long startTime = System.nanoTime();
+        try {
+            // Stage 1-2: engines race; publish each result as it lands
+            CompletionService<SortingAlgorithms.Route> completion = new ExecutorCompletionService<>(RouteOptimizer.ENGINE_POOL);
+            int submitted = 0;
+            for (Callable<SortingAlgorithms.Route> engine : RouteOptimizer.routeEngines(graph, start, end).values()) {
+                run.add(completion.submit(engine));
+                submitted++;
+            }
+            SortingAlgorithms.Route best = null;
+            List<List<String>> published = new ArrayList<>();
+            for (int received = 0; received < submitted; ) {
+                Future<SortingAlgorithms.Route> done = completion.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    if (stopped(publisher, run)) return;
+                    continue; // Engines still running and the subscriber is still there
+                }
+                received++;
+                SortingAlgorithms.Route route;
+                try {
+                    route = done.get();
+                } catch (ExecutionException | CancellationException e) {
+                    continue; // One failing engine does not end the stream
+                }
+                if (route == null || published.contains(route.path)) {
+                    continue;
+                }
+                Kind kind = best == null ? Kind.FEASIBLE : route.distance < best.distance - EPSILON ? Kind.IMPROVED : Kind.ALTERNATIVE;
+                if (kind != Kind.ALTERNATIVE) {
+                    best = route;
+                }
+                published.add(route.path);
+                if (!emit(publisher, run, new RouteUpdate(kind, route, elapsed(startTime)))) return;
+            }
+            if (best == null) {
+                publisher.close(); // No route at all: complete without enrichment
+                return;
+            }
+
+            // Stage 2: loopless alternatives
+            CompactGraph compact = graph.toCompact();
+            for (KShortestPaths.PathResult path : KShortestPaths.find(compact, compact.indexOf(start), compact.indexOf(end), ALTERNATIVES, null, run::isCancelled)) {
+                List<String> names = compact.pathNames(path.nodes);
+                if (published.contains(names)) continue;
+                published.add(names);
+                SortingAlgorithms.Route route = new SortingAlgorithms.Route(names, path.cost, path.cost / 2, "K-Shortest");
+                if (!emit(publisher, run, new RouteUpdate(Kind.ALTERNATIVE, route, elapsed(startTime)))) return;
+            }
+
+            // Stage 3: enrichment of the best route
+            RouteUpdate traffic = new RouteUpdate(Kind.TRAFFIC, best, 0);
+            traffic.traffic = TrafficSimulator.optimizeForTime(best.path, best.distance, best.time,
+                departureTime == null ? LocalTime.now() : departureTime);
+            traffic.elapsedMillis = elapsed(startTime);
+            if (!emit(publisher, run, traffic)) return;
+
+            RouteUpdate weather = new RouteUpdate(Kind.WEATHER, best, 0);
+            weather.weather = WeatherIntegration.adjustRouteForWeather(best.path, best.distance, best.time);
+            weather.elapsedMillis = elapsed(startTime);
+            if (!emit(publisher, run, weather)) return;
+
+            RouteUpdate accessibility = new RouteUpdate(Kind.ACCESSIBILITY, best, 0);
+            accessibility.accessibility = AccessibilityFeatures.createAccessibleRoute(best.path, best.distance, best.time, accessibilityType);
+            accessibility.elapsedMillis = elapsed(startTime);
+            if (!emit(publisher, run, accessibility)) return;
+
+            publisher.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            publisher.closeExceptionally(e);
+        } catch (CancellationException e) {
+            publisher.close(); // The subscriber cancelled during the k-shortest search
+        } catch (RuntimeException e) {
+            publisher.closeExceptionally(e);
+        } finally {
+            run.cancel();
+        }
+    }
+
+    /**
+     * Hands an update to the subscriber, waiting while its buffer is full.
+     * Returns false (and closes the publisher) once the subscriber has cancelled.
+     */
+    private static boolean emit(SubmissionPublisher<RouteUpdate> publisher, Run run, RouteUpdate update) {
+        while (!stopped(publisher, run)) {
+            if (publisher.offer(update, POLL_MILLIS, TimeUnit.MILLISECONDS, null) >= 0) {
+                return true;
+            }
+            // Buffer still full: the update was dropped, so check the subscriber and offer it again
+        }
+        return false;
+    }
+
+    // True (and the publisher closed) once the subscriber is gone
+    private static boolean stopped(SubmissionPublisher<RouteUpdate> publisher, Run run) {
+        if (run.isCancelled() || publisher.isClosed() || !publisher.hasSubscribers()) {
+            publisher.close();
+            return true;
+        }
+        return false;
+    }
+
+    private static double elapsed(long startTime) {
+        return (System.nanoTime() - startTime) / 1_000_000.0;
+    }
+
+    /**
+     * Cancellation state of one run: the engines it started and whether its
+     * subscriber has cancelled.
+     */
+    private static class Run {
+        private final List<Future<?>> engines = new ArrayList<>();
+        private volatile boolean cancelled;
+
+        synchronized void add(Future<?> engine) {
+            if (cancelled) {
+                engine.cancel(true);
+            } else {
+                engines.add(engine);
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            for (Future<?> engine : engines) {
+                engine.cancel(true);
+            }
+            engines.clear();
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Passes everything through to the subscriber, but cancels the run's engines
+     * the moment the subscription is cancelled instead of at the producer's next check.
+     */
+    private static class CancelAwareSubscriber implements Flow.Subscriber<RouteUpdate> {
+        private final Flow.Subscriber<? super RouteUpdate> subscriber;
+        private final Run run;
+
+        CancelAwareSubscriber(Flow.Subscriber<? super RouteUpdate> subscriber, Run run) {
+            this.subscriber = subscriber;
+            this.run = run;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    subscription.cancel();
+                    run.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(RouteUpdate item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.util.*;
  * - Grouping landmarks by category.
  * - Suggesting possible landmarks based on partial names.
  * - Calculating distances and finding nearest landmarks.
+ * - Finding the nearest landmarks of a category by actual walking distance.
  * 
  * This class supports an imaginary campus guide system — "Campus Compass".
  */
@@ -64,6 +65,149 @@ public class SearchAlgorithms {
         }
     }
 
+    /**
+     * A landmark found by a walking-distance search.
+     */
+    public static class NearbyLandmark {
+        public Landmark landmark;       // The landmark that was found
+        public String accessLocation;   // Graph location where the landmark is reached
+        public double distance;         // Walking distance from the start
+        public List<String> path;       // Walking route to the access location
+
+        public NearbyLandmark(Landmark landmark, String accessLocation, double distance, List<String> path) {
+            this.landmark = landmark;
+            this.accessLocation = accessLocation;
+            this.distance = distance;
+            this.path = path;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%s) - %.2fm via %s", landmark.name, landmark.category, distance, String.join(" -> ", path));
+        }
+    }
+
+    /**
+     * Precomputed node -> landmark/category index over one CompactGraph snapshot.
+     * A landmark is attached to the graph node with its name; landmarks that are
+     * not graph locations themselves are attached to their nearby locations instead.
+     * Queries only resolve the category name once and then compare ints.
+     * After the graph is edited, queries use an index rebuilt for the new version.
+     */
+    public static class LandmarkIndex {
+        final Graph source;                   // Graph the index was built from
+        final List<Landmark> landmarkList;
+        final CompactGraph graph;
+        final Landmark[] landmarks;           // Landmark id -> landmark
+        final int[] landmarkCategory;         // Landmark id -> category id
+        final int[] firstEntry;               // Node id -> first entry (size n + 1)
+        final int[] entryLandmark;            // Entry -> landmark id
+        final Map<String, Integer> categoryIds;
+        private volatile LandmarkIndex rebuilt;  // Index for a newer graph version (null = none yet)
+
+        public LandmarkIndex(Graph graph, List<Landmark> landmarkList) {
+            this.source = graph;
+            this.landmarkList = new ArrayList<>(landmarkList);
+            this.graph = graph.toCompact();
+            this.landmarks = landmarkList.toArray(new Landmark[0]);
+            this.landmarkCategory = new int[landmarks.length];
+            this.categoryIds = new HashMap<>();
+
+            int n = this.graph.nodeCount();
+            List<List<Integer>> perNode = new ArrayList<>(n);
+            for (int v = 0; v < n; v++) {
+                perNode.add(new ArrayList<>(1));
+            }
+
+            int entries = 0;
+            for (int i = 0; i < landmarks.length; i++) {
+                Landmark landmark = landmarks[i];
+                landmarkCategory[i] = categoryIds.computeIfAbsent(landmark.category.toLowerCase(), k -> categoryIds.size());
+
+                int node = this.graph.indexOf(landmark.name);
+                if (node >= 0) {
+                    perNode.get(node).add(i);
+                    entries++;
+                    continue;
+                }
+                for (String nearby : landmark.nearbyLocations) {
+                    int access = this.graph.indexOf(nearby);
+                    if (access >= 0) {
+                        perNode.get(access).add(i);
+                        entries++;
+                    }
+                }
+            }
+
+            firstEntry = new int[n + 1];
+            entryLandmark = new int[entries];
+            for (int v = 0; v < n; v++) {
+                List<Integer> list = perNode.get(v);
+                firstEntry[v + 1] = firstEntry[v] + list.size();
+                for (int k = 0; k < list.size(); k++) {
+                    entryLandmark[firstEntry[v] + k] = list.get(k);
+                }
+            }
+        }
+
+        // Whether the index still matches the current version of the graph
+        public boolean isCurrent(Graph current) {
+            return graph.version == current.getVersion();
+        }
+
+        // This index, or one rebuilt once for the graph's current version
+        LandmarkIndex current() {
+            if (isCurrent(source)) {
+                return this;
+            }
+            LandmarkIndex latest = rebuilt;
+            if (latest == null || !latest.isCurrent(source)) {
+                latest = new LandmarkIndex(source, landmarkList);
+                rebuilt = latest;
+            }
+            return latest;
+        }
+    }
+
+    /**
+     * Finds the nearest landmarks of a category by actual walking distance.
+     * Runs a single Dijkstra search from the start and stops as soon as the
+     * requested number of matching landmarks has been settled. If the graph has
+     * been edited since the index was built, the index is rebuilt first.
+     *
+     * @param index     Landmark index for the graph being searched
+     * @param start     Starting location
+     * @param category  The desired category (e.g., "Food", "Emergency")
+     * @param count     Number of landmarks to return
+     * @return Up to count landmarks, nearest first
+     */
+    public static List<NearbyLandmark> findNearestByWalkingDistance(LandmarkIndex index, Nodes start, String category, int count) {
+        index = index.current();
+        List<NearbyLandmark> results = new ArrayList<>();
+        Integer categoryId = index.categoryIds.get(category.toLowerCase());
+        int source = index.graph.indexOf(start);
+        if (categoryId == null || source < 0 || count <= 0) {
+            return results;
+        }
+
+        SearchSpace space = SearchSpace.forCurrentThread(index.graph);
+        space.start(null, false);
+        space.addSource(source, 0.0);
+
+        boolean[] found = new boolean[index.landmarks.length];
+        int v;
+        while (results.size() < count && (v = space.settleNext()) != -1) {
+            for (int k = index.firstEntry[v]; k < index.firstEntry[v + 1] && results.size() < count; k++) {
+                int landmark = index.entryLandmark[k];
+                if (index.landmarkCategory[landmark] != categoryId || found[landmark]) continue;
+                found[landmark] = true;
+                results.add(new NearbyLandmark(index.landmarks[landmark], index.graph.name(v),
+                    space.distance(v), index.graph.pathNames(space.pathTo(v))));
+            }
+        }
+        return results;
+    }
+
     /**
      * Performs a linear search to find a landmark by name.
      * 
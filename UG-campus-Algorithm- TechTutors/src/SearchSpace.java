@@ -0,0 +1,264 @@
+import java.util.Arrays;
+
+/**
+ * SearchSpace - reusable Dijkstra workspace over a CompactGraph
+ * ---------------------------------------------------------------
+ * Holds the distance, parent and heap arrays for one search at a time.
+ * Arrays are allocated once per graph snapshot and invalidated between
+ * searches with a round stamp, so starting a new search costs O(1) instead
+ * of O(V). A SearchSpace is not thread-safe; give each worker its own.
+ *
+ * Typical use:
+ *   space.start(costs, false);
+ *   space.addSource(s, 0);
+ *   int v;
+ *   while ((v = space.settleNext()) != -1) { ... stop when done ... }
+ *
+ * Searches can run forward (along edges) or backward (against edges, giving
+ * distances *to* the sources). Edges whose cost is infinite are treated as closed.
+ * Attach a SearchTrace with setTrace to record every step (explain mode).
+ */
+public class SearchSpace {
+    final CompactGraph graph;
+    private final double[] dist;        // Node -> tentative distance (valid if reached this round)
+    private final int[] parentEdge;     // Node -> edge used to reach it (-1 for sources)
+    private final int[] reachedRound;   // Node -> round in which dist was written
+    private final int[] settledRound;   // Node -> round in which it was settled
+    private final MinHeap heap;
+    private int round;
+    private double[] costs;
+    private float[] compiledCosts;      // Edge costs from a CompiledCostModel (null = use costs)
+    private boolean backward;
+    private int settledCount;
+    private int relaxedCount;
+    private int[] blockedNodeRound;     // Node -> round in which it is excluded (allocated on first use)
+    private int[] blockedEdgeRound;     // Edge -> round in which it is excluded (allocated on first use)
+    private SearchTrace trace;          // Explain mode (null = off)
+
+    // Per-thread workspace reused by the query engines
+    private static final ThreadLocal<SearchSpace> LOCAL = new ThreadLocal<>();
+
+    public SearchSpace(CompactGraph graph) {
+        this.graph = graph;
+        int n = graph.nodeCount();
+        dist = new double[n];
+        parentEdge = new int[n];
+        reachedRound = new int[n];
+        settledRound = new int[n];
+        heap = new MinHeap(n);
+    }
+
+    /**
+     * Returns the calling thread's cached workspace for this snapshot, creating a
+     * new one when the thread has none yet or the graph has been rebuilt since.
+     * The workspace is shared, so don't hold it across calls into another engine.
+     */
+    public static SearchSpace forCurrentThread(CompactGraph graph) {
+        SearchSpace space = LOCAL.get();
+        if (space == null || space.graph != graph) {
+            space = new SearchSpace(graph);
+            LOCAL.set(space);
+        }
+        return space;
+    }
+
+    /**
+     * Records subsequent searches into the trace (null turns tracing off).
+     * Don't attach a trace to a forCurrentThread workspace; other engines reuse it.
+     */
+    public void setTrace(SearchTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Begins a new search using the given per-edge costs.
+     * @param costs    Cost per edge id (null = base edge weights)
+     * @param backward true to search against edge direction
+     */
+    public void start(double[] costs, boolean backward) {
+        this.costs = costs == null ? graph.weight : costs;
+        this.compiledCosts = null;
+        this.backward = backward;
+        heap.clear();
+        settledCount = 0;
+        relaxedCount = 0;
+        if (++round == Integer.MAX_VALUE) {
+            // Stamp wrap-around: clear everything once every ~2 billion searches
+            Arrays.fill(reachedRound, 0);
+            Arrays.fill(settledRound, 0);
+            if (blockedNodeRound != null) Arrays.fill(blockedNodeRound, 0);
+            if (blockedEdgeRound != null) Arrays.fill(blockedEdgeRound, 0);
+            round = 1;
+        }
+    }
+
+    /**
+     * Begins a new search reading compiled float costs (CompiledCostModel)
+     * directly, without converting them to a double[] first.
+     */
+    public void startCompiled(float[] costs, boolean backward) {
+        start(null, backward);
+        this.compiledCosts = costs;
+    }
+
+    /**
+     * Excludes a node from the current search (call after start, before settling).
+     */
+    public void blockNode(int node) {
+        if (blockedNodeRound == null) {
+            blockedNodeRound = new int[dist.length];
+        }
+        blockedNodeRound[node] = round;
+    }
+
+    /**
+     * Excludes an edge from the current search (call after start, before settling).
+     */
+    public void blockEdge(int edge) {
+        if (blockedEdgeRound == null) {
+            blockedEdgeRound = new int[graph.edgeCount()];
+        }
+        blockedEdgeRound[edge] = round;
+    }
+
+    /**
+     * Seeds the search with a source at the given initial cost.
+     */
+    public void addSource(int node, double initialCost) {
+        if (initialCost < distance(node)) {
+            dist[node] = initialCost;
+            parentEdge[node] = -1;
+            reachedRound[node] = round;
+            heap.insertOrDecrease(node, initialCost);
+            if (trace != null) trace.record(SearchTrace.Event.HEAP_PUSH, node, -1, -1, initialCost);
+        }
+    }
+
+    /**
+     * Settles the closest queued node and relaxes its edges.
+     * @return the settled node id, or -1 when the search space is exhausted
+     */
+    public int settleNext() {
+        if (heap.isEmpty()) {
+            return -1;
+        }
+        int u = heap.poll();
+        settledRound[u] = round;
+        settledCount++;
+        double du = dist[u];
+        if (trace != null) {
+            trace.record(SearchTrace.Event.HEAP_POP, u, -1, -1, du);
+            trace.record(SearchTrace.Event.SETTLE, u, -1, parentEdge[u], du);
+        }
+
+        float[] compiled = compiledCosts;
+        if (compiled == null) {
+            if (!backward) {
+                for (int e = graph.firstOut[u]; e < graph.firstOut[u + 1]; e++) {
+                    relax(graph.head[e], e, du + costs[e]);
+                }
+            } else {
+                for (int slot = graph.firstIn[u]; slot < graph.firstIn[u + 1]; slot++) {
+                    int e = graph.inEdge[slot];
+                    relax(graph.tail[e], e, du + costs[e]);
+                }
+            }
+        } else if (!backward) {
+            for (int e = graph.firstOut[u]; e < graph.firstOut[u + 1]; e++) {
+                relax(graph.head[e], e, du + compiled[e]);
+            }
+        } else {
+            for (int slot = graph.firstIn[u]; slot < graph.firstIn[u + 1]; slot++) {
+                int e = graph.inEdge[slot];
+                relax(graph.tail[e], e, du + compiled[e]);
+            }
+        }
+        return u;
+    }
+
+    private void relax(int v, int edge, double candidate) {
+        if (candidate == Double.POSITIVE_INFINITY || settledRound[v] == round) {
+            if (trace != null) trace.record(SearchTrace.Event.PRUNE, v, backward ? graph.head[edge] : graph.tail[edge], edge, candidate);
+            return;
+        }
+        if ((blockedNodeRound != null && blockedNodeRound[v] == round)
+                || (blockedEdgeRound != null && blockedEdgeRound[edge] == round)) {
+            if (trace != null) trace.record(SearchTrace.Event.PRUNE, v, backward ? graph.head[edge] : graph.tail[edge], edge, candidate);
+            return;
+        }
+        if (reachedRound[v] != round || candidate < dist[v]) {
+            if (trace != null) {
+                int from = backward ? graph.head[edge] : graph.tail[edge];
+                trace.record(SearchTrace.Event.RELAX, v, from, edge, candidate);
+                trace.record(reachedRound[v] != round ? SearchTrace.Event.HEAP_PUSH : SearchTrace.Event.HEAP_DECREASE, v, from, edge, candidate);
+            }
+            dist[v] = candidate;
+            parentEdge[v] = edge;
+            reachedRound[v] = round;
+            heap.insertOrDecrease(v, candidate);
+            relaxedCount++;
+        } else if (trace != null) {
+            trace.record(SearchTrace.Event.SCAN, v, backward ? graph.head[edge] : graph.tail[edge], edge, candidate);
+        }
+    }
+
+    // Distance of the next node to be settled (infinity if none)
+    public double peekDistance() {
+        return heap.isEmpty() ? Double.POSITIVE_INFINITY : heap.peekKey();
+    }
+
+    // Best known distance to a node in the current search (infinity if unreached)
+    public double distance(int node) {
+        return reachedRound[node] == round ? dist[node] : Double.POSITIVE_INFINITY;
+    }
+
+    // Whether the node's distance is final in the current search
+    public boolean isSettled(int node) {
+        return settledRound[node] == round;
+    }
+
+    // Edge through which the node was reached (-1 for sources or unreached nodes)
+    public int parentEdge(int node) {
+        return reachedRound[node] == round ? parentEdge[node] : -1;
+    }
+
+    // Number of nodes settled in the current search
+    public int settledCount() {
+        return settledCount;
+    }
+
+    // Number of successful edge relaxations in the current search
+    public int relaxedCount() {
+        return relaxedCount;
+    }
+
+    public boolean isBackward() {
+        return backward;
+    }
+
+    /**
+     * Reconstructs the path for a reached node, always in travel order.
+     * Forward search: source ... node. Backward search: node ... source.
+     * Returns an empty array if the node was not reached.
+     */
+    public int[] pathTo(int node) {
+        if (distance(node) == Double.POSITIVE_INFINITY) {
+            return new int[0];
+        }
+        int length = 1;
+        for (int v = node, e; (e = parentEdge[v]) != -1; length++) {
+            v = backward ? graph.head[e] : graph.tail[e];
+        }
+
+        int[] path = new int[length];
+        int v = node;
+        for (int i = 0; i < length; i++) {
+            path[backward ? i : length - 1 - i] = v;
+            int e = parentEdge[v];
+            if (e != -1) {
+                v = backward ? graph.head[e] : graph.tail[e];
+            }
+        }
+        return path;
+    }
+}
@@ -0,0 +1,189 @@
+import java.util.*;
+
+/**
+ * SearchTrace - explain mode for the search engines
+ * --------------------------------------------------
+ * Records what a search did, so a slow origin-destination pair can be inspected
+ * step by step instead of being summarized by a single nodesExplored number.
+ *
+ * Features:
+ * - Events: settled nodes in order, edge relaxations and scans, pruned edges,
+ *   heap pushes/decreases/pops, plus named phase timings.
+ * - Stored in a preallocated ring buffer of primitive arrays, so recording never
+ *   allocates. When full, the oldest events are overwritten; totals per event type
+ *   are still counted.
+ * - Opt-in: engines keep a null trace by default and only test for null, so an
+ *   untraced search does no extra work.
+ * - toJson() exports everything for visual inspection.
+ *
+ * A trace belongs to one search on one thread; it is not thread-safe.
+ */
+public class SearchTrace {
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    public enum Event { SETTLE, RELAX, SCAN, PRUNE, HEAP_PUSH, HEAP_DECREASE, HEAP_POP }
+
+    private static final Event[] EVENTS = Event.values();
+
+    private final String engine;
+    private final CompactGraph graph;    // Used to name node ids in the export
+    private final int mask;
+    private final byte[] kinds;
+    private final int[] nodes;           // Node the event is about
+    private final int[] froms;           // Node the edge comes from (-1 if none)
+    private final int[] edges;           // Edge id (-1 if the engine has none)
+    private final double[] values;       // Distance / priority involved
+    private final long[] times;          // Nanoseconds since the trace was created
+    private final long[] totals = new long[EVENTS.length];
+    private final long origin;
+    private long written;
+
+    private final List<String> phaseNames = new ArrayList<>();
+    private final List<long[]> phaseTimes = new ArrayList<>();   // {start, end} nanoseconds since origin
+
+    public SearchTrace(String engine, CompactGraph graph) {
+        this(engine, graph, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Events kept (rounded up to a power of two)
+     */
+    public SearchTrace(String engine, CompactGraph graph, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.engine = engine;
+        this.graph = graph;
+        this.mask = size - 1;
+        kinds = new byte[size];
+        nodes = new int[size];
+        froms = new int[size];
+        edges = new int[size];
+        values = new double[size];
+        times = new long[size];
+        origin = System.nanoTime();
+    }
+
+    // Records one event; node ids are CompactGraph ids
+    void record(Event kind, int node, int from, int edge, double value) {
+        int i = (int) (written++ & mask);
+        kinds[i] = (byte) kind.ordinal();
+        nodes[i] = node;
+        froms[i] = from;
+        edges[i] = edge;
+        values[i] = value;
+        times[i] = System.nanoTime() - origin;
+        totals[kind.ordinal()]++;
+    }
+
+    // Records an event for the object-graph engines (A*, Graph.shortestPath)
+    void record(Event kind, Nodes node, Nodes from, double value) {
+        record(kind, graph.indexOf(node), from == null ? -1 : graph.indexOf(from), -1, value);
+    }
+
+    void beginPhase(String name) {
+        phaseNames.add(name);
+        phaseTimes.add(new long[] { System.nanoTime() - origin, -1 });
+    }
+
+    void endPhase() {
+        for (int i = phaseTimes.size() - 1; i >= 0; i--) {
+            if (phaseTimes.get(i)[1] < 0) {
+                phaseTimes.get(i)[1] = System.nanoTime() - origin;
+                return;
+            }
+        }
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    // Events recorded in total, including overwritten ones
+    public long recorded() {
+        return written;
+    }
+
+    // Events lost to the ring buffer wrapping around
+    public long dropped() {
+        return Math.max(0, written - kinds.length);
+    }
+
+    public long count(Event kind) {
+        return totals[kind.ordinal()];
+    }
+
+    // Node ids settled, in order (only those still in the buffer)
+    public int[] settledOrder() {
+        int[] order = new int[(int) Math.min(written, kinds.length)];
+        int count = 0;
+        for (long k = written - order.length; k < written; k++) {
+            int i = (int) (k & mask);
+            if (kinds[i] == Event.SETTLE.ordinal()) order[count++] = nodes[i];
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    /**
+     * Exports counts, phases and the buffered events as JSON.
+     * Times are in microseconds since the trace was created.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(256 + (int) Math.min(written, kinds.length) * 80);
+        json.append("{\"engine\":").append(quote(engine))
+            .append(",\"capacity\":").append(kinds.length)
+            .append(",\"recorded\":").append(written)
+            .append(",\"dropped\":").append(dropped());
+
+        json.append(",\"counts\":{");
+        for (int k = 0; k < EVENTS.length; k++) {
+            if (k > 0) json.append(',');
+            json.append('"').append(EVENTS[k]).append("\":").append(totals[k]);
+        }
+
+        json.append("},\"phases\":[");
+        for (int p = 0; p < phaseNames.size(); p++) {
+            long[] span = phaseTimes.get(p);
+            if (p > 0) json.append(',');
+            json.append("{\"name\":").append(quote(phaseNames.get(p)))
+                .append(",\"startUs\":").append(micros(span[0]))
+                .append(",\"durationUs\":").append(span[1] < 0 ? "null" : micros(span[1] - span[0])).append('}');
+        }
+
+        json.append("],\"events\":[");
+        boolean first = true;
+        for (long k = written - Math.min(written, kinds.length); k < written; k++) {
+            int i = (int) (k & mask);
+            if (!first) json.append(',');
+            first = false;
+            json.append("{\"seq\":").append(k)
+                .append(",\"tUs\":").append(micros(times[i]))
+                .append(",\"type\":\"").append(EVENTS[kinds[i]]).append('"')
+                .append(",\"node\":").append(name(nodes[i]));
+            if (froms[i] >= 0) json.append(",\"from\":").append(name(froms[i]));
+            if (edges[i] >= 0) json.append(",\"edge\":").append(edges[i]);
+            json.append(",\"value\":").append(Double.isFinite(values[i]) ? Double.toString(values[i]) : "null").append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private String name(int id) {
+        return id < 0 || id >= graph.nodeCount() ? "null" : quote(graph.name(id));
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000.0);
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,119 @@
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * TimeDependentRouting - shortest walking time when traffic changes en route
+ * ---------------------------------------------------------------------------
+ * EdgeCostModel.travelTimes prices every edge at the departure time, so a walk
+ * that reaches JQB at 16:05 is charged the 15:00 traffic. Here each edge is
+ * priced at the moment you actually reach it, using a TrafficProfile.
+ *
+ * How it works:
+ * - Dijkstra on earliest arrival time: a node's label is the time you get there,
+ *   and relaxing edge e from u gives profile.arrival(e, label(u)).
+ * - The profile guarantees FIFO (leaving later never arrives earlier), so the
+ *   first time a node is settled is its earliest possible arrival.
+ * - The chosen route genuinely depends on the departure time; e.g. leaving Main
+ *   Gate at 17:00 avoids the JQB lecture rush that a 06:00 walk goes straight through.
+ */
+public class TimeDependentRouting {
+
+    /**
+     * A route with the clock time at every stop.
+     */
+    public static class TimedRoute {
+        public int[] nodes;               // Node ids from start to end
+        public List<String> path;         // Location names from start to end
+        public double[] stopTimes;        // Arrival time at each stop, seconds since midnight (may pass 86400)
+        public double departure;          // Departure time, seconds since midnight
+        public double arrival;            // Arrival time at the end, seconds since midnight
+        public double travelTime;         // arrival - departure, in seconds
+        public int nodesExplored;         // Nodes settled by the search
+
+        public TimedRoute(int[] nodes, List<String> path, double[] stopTimes, double departure,
+            double arrival, int nodesExplored) {
+            this.nodes = nodes;
+            this.path = path;
+            this.stopTimes = stopTimes;
+            this.departure = departure;
+            this.arrival = arrival;
+            this.travelTime = arrival - departure;
+            this.nodesExplored = nodesExplored;
+        }
+
+        // Clock time at a stop (wraps past midnight)
+        public LocalTime timeAt(int stop) {
+            return LocalTime.ofSecondOfDay(Math.floorMod(Math.round(stopTimes[stop]), TrafficProfile.DAY_SECONDS));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s (%.1fs): %s", timeAt(0), timeAt(stopTimes.length - 1), travelTime, path);
+        }
+    }
+
+    /**
+     * Fastest route leaving at the given time, with TrafficSimulator traffic.
+     * Returns null if there is no path.
+     */
+    public static TimedRoute route(Graph graph, Nodes start, Nodes end, LocalTime departureTime) {
+        CompactGraph compact = graph.toCompact();
+        TrafficProfile profile = TrafficProfile.cachedFromTrafficSimulator(compact);
+        return route(profile, compact.indexOf(start), compact.indexOf(end), departureTime.toSecondOfDay());
+    }
+
+    /**
+     * Earliest-arrival search on a CompactGraph.
+     * @param departure Seconds since midnight
+     */
+    public static TimedRoute route(TrafficProfile profile, int source, int target, double departure) {
+        CompactGraph graph = profile.graph;
+        if (source < 0 || target < 0) {
+            throw new IllegalArgumentException("Start or end location is not part of the graph");
+        }
+        int n = graph.nodeCount();
+        double[] arrival = new double[n];
+        int[] parentEdge = new int[n];
+        boolean[] settled = new boolean[n];
+        Arrays.fill(arrival, Double.POSITIVE_INFINITY);
+        Arrays.fill(parentEdge, -1);
+
+        MinHeap heap = new MinHeap(n);
+        arrival[source] = departure;
+        heap.insertOrDecrease(source, departure);
+        int explored = 0;
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled[u] = true;
+            explored++;
+            if (u == target) {
+                break;
+            }
+            for (int e = graph.firstOut[u]; e < graph.firstOut[u + 1]; e++) {
+                int v = graph.head[e];
+                if (settled[v]) continue;
+                double reach = profile.arrival(e, arrival[u]);
+                if (reach < arrival[v]) {
+                    arrival[v] = reach;
+                    parentEdge[v] = e;
+                    heap.insertOrDecrease(v, reach);
+                }
+            }
+        }
+        if (!settled[target]) {
+            return null;
+        }
+
+        int hops = 0;
+        for (int v = target; v != source; v = graph.tail[parentEdge[v]]) hops++;
+        int[] nodes = new int[hops + 1];
+        double[] stopTimes = new double[hops + 1];
+        for (int v = target, i = hops; i >= 0; i--) {
+            nodes[i] = v;
+            stopTimes[i] = arrival[v];
+            if (i > 0) v = graph.tail[parentEdge[v]];
+        }
+        return new TimedRoute(nodes, graph.pathNames(nodes), stopTimes, departure, arrival[target], explored);
+    }
+}
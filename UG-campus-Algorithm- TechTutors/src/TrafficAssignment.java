@@ -0,0 +1,366 @@
+import java.util.*;
+
+/**
+ * TrafficAssignment - user-equilibrium flows for an OD demand matrix
+ * -------------------------------------------------------------------
+ * Fixed congestion factors assume crowds do not react. Here every walker picks
+ * their own fastest route given everyone else's choice, and the engine finds the
+ * resulting equilibrium (Wardrop): no walker can save time by switching route.
+ *
+ * How it works (Frank-Wolfe on the Beckmann objective):
+ * 1. Edge times from the current flows through a volume-delay function.
+ * 2. All-or-nothing assignment: every origin's demand on its shortest-path tree.
+ *    Origins run in parallel through ParallelPartitions.
+ * 3. Move the flows toward that assignment by the step that minimizes the
+ *    objective (bisection on its derivative).
+ * The conjugate variant (Mitradjieva and Lindberg) mixes in the previous search
+ * direction and usually needs far fewer iterations for the same gap.
+ *
+ * Stops when the relative gap (how much shorter the current shortest paths are
+ * than the paths in use) drops below the tolerance.
+ */
+public class TrafficAssignment {
+    // Walkway capacity used by walkwayBpr: pedestrians per hour per meter of width
+    static final double PEDESTRIANS_PER_METER_HOUR = 1.3 * 3600;
+    private static final int LINE_SEARCH_STEPS = 40;
+    private static final double CONJUGATE_LIMIT = 0.99;
+
+    /**
+     * Travel time of an edge (seconds) as a function of its flow.
+     */
+    @FunctionalInterface
+    public interface VolumeDelayFunction {
+        double travelTime(int edge, double flow);
+
+        // Rate of change of the travel time with the flow (numeric unless overridden)
+        default double derivative(int edge, double flow) {
+            double h = Math.max(1e-6, flow * 1e-6);
+            return (travelTime(edge, flow + h) - travelTime(edge, Math.max(0, flow - h))) / (flow + h - Math.max(0, flow - h));
+        }
+    }
+
+    /**
+     * Origin-destination demand (e.g. walkers per hour), grouped by origin.
+     */
+    public static class Demand {
+        final CompactGraph graph;
+        private final Map<Integer, Map<Integer, Double>> byOrigin = new TreeMap<>();
+        public double total;              // Sum of all volumes
+
+        public Demand(CompactGraph graph) {
+            this.graph = graph;
+        }
+
+        public Demand add(String from, String to, double volume) {
+            int origin = graph.indexOf(from);
+            int destination = graph.indexOf(to);
+            if (origin < 0 || destination < 0) {
+                throw new IllegalArgumentException("Unknown location: " + (origin < 0 ? from : to));
+            }
+            return add(origin, destination, volume);
+        }
+
+        public Demand add(int origin, int destination, double volume) {
+            if (origin != destination && volume > 0) {
+                byOrigin.computeIfAbsent(origin, o -> new TreeMap<>()).merge(destination, volume, Double::sum);
+                total += volume;
+            }
+            return this;
+        }
+
+        public int pairs() {
+            int pairs = 0;
+            for (Map<Integer, Double> row : byOrigin.values()) pairs += row.size();
+            return pairs;
+        }
+    }
+
+    /**
+     * Equilibrium flows, times and a convergence report.
+     */
+    public static class AssignmentResult {
+        public double[] flows;            // Edge -> equilibrium flow
+        public double[] travelTimes;      // Edge -> travel time at that flow (seconds)
+        public int iterations;            // Iterations run
+        public double relativeGap;        // Final relative gap (0 = exact equilibrium)
+        public boolean converged;         // Gap reached the tolerance
+        public double[] gapHistory;       // Relative gap after each iteration
+        public double unassignedDemand;   // Demand between pairs with no path
+        public double totalTravelTime;    // Sum over edges of flow x time
+        public double elapsedMillis;
+
+        public AssignmentResult(double[] flows, double[] travelTimes, int iterations, double relativeGap,
+            boolean converged, double[] gapHistory, double unassignedDemand, double totalTravelTime, double elapsedMillis) {
+            this.flows = flows;
+            this.travelTimes = travelTimes;
+            this.iterations = iterations;
+            this.relativeGap = relativeGap;
+            this.converged = converged;
+            this.gapHistory = gapHistory;
+            this.unassignedDemand = unassignedDemand;
+            this.totalTravelTime = totalTravelTime;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Iteration-by-iteration convergence report.
+         */
+        public String report() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("%s after %d iterations, relative gap %.2e, total travel time %.0f s (%.0f ms)%n",
+                converged ? "Converged" : "Stopped", iterations, relativeGap, totalTravelTime, elapsedMillis));
+            for (int i = 0; i < gapHistory.length; i++) {
+                report.append(String.format("  iteration %3d: gap %.3e%n", i + 1, gapHistory[i]));
+            }
+            if (unassignedDemand > 0) {
+                report.append(String.format("  %.1f demand has no path and was not assigned%n", unassignedDemand));
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * BPR function t = t0 * (1 + alpha * (flow / capacity)^beta), with t0 the
+     * free walking time of the edge.
+     */
+    public static VolumeDelayFunction bpr(CompactGraph graph, double[] capacities, double alpha, double beta) {
+        double[] freeTimes = EdgeCostModel.walkingTimes(graph);
+        return new VolumeDelayFunction() {
+            @Override
+            public double travelTime(int edge, double flow) {
+                return freeTimes[edge] * (1 + alpha * Math.pow(flow / capacities[edge], beta));
+            }
+
+            @Override
+            public double derivative(int edge, double flow) {
+                return freeTimes[edge] * alpha * beta * Math.pow(flow / capacities[edge], beta - 1) / capacities[edge];
+            }
+        };
+    }
+
+    /**
+     * Standard BPR (alpha 0.15, beta 4) with capacities from a walkway width (meters),
+     * for demand in walkers per hour.
+     */
+    public static VolumeDelayFunction walkwayBpr(CompactGraph graph, double widthMeters) {
+        double[] capacities = new double[graph.edgeCount()];
+        Arrays.fill(capacities, widthMeters * PEDESTRIANS_PER_METER_HOUR);
+        return bpr(graph, capacities, 0.15, 4);
+    }
+
+    /**
+     * Equilibrium for a demand matrix given as from -> to -> walkers per hour, on
+     * 4 m walkways, with the conjugate variant.
+     */
+    public static AssignmentResult assign(Graph graph, Map<String, Map<String, Double>> odMatrix) {
+        CompactGraph compact = graph.toCompact();
+        Demand demand = new Demand(compact);
+        odMatrix.forEach((from, row) -> row.forEach((to, volume) -> demand.add(from, to, volume)));
+        return assign(demand, walkwayBpr(compact, 4.0), 200, 1e-4, true);
+    }
+
+    /**
+     * @param maxIterations Upper bound on iterations
+     * @param gapTolerance  Stop when the relative gap is below this
+     * @param conjugate     Conjugate Frank-Wolfe instead of plain Frank-Wolfe
+     */
+    public static AssignmentResult assign(Demand demand, VolumeDelayFunction vdf, int maxIterations,
+        double gapTolerance, boolean conjugate) {
+        long startTime = System.nanoTime();
+        CompactGraph graph = demand.graph;
+        int m = graph.edgeCount();
+        OriginTable origins = new OriginTable(demand);
+
+        double[] times = new double[m];
+        updateTimes(vdf, new double[m], times);
+        double[] flows = new double[m];
+        double unassigned = allOrNothing(graph, origins, times, flows);
+
+        double[] target = new double[m];
+        double[] direction = new double[m];
+        double[] previousTarget = null;       // s_{k-1} of the conjugate method
+        double[] gaps = new double[maxIterations];
+        double gap = Double.POSITIVE_INFINITY;
+        int iteration = 0;
+
+        while (iteration < maxIterations) {
+            updateTimes(vdf, flows, times);
+            allOrNothing(graph, origins, times, target);
+
+            // Relative gap: (current cost - shortest-path cost) / current cost
+            double current = 0, shortest = 0;
+            for (int e = 0; e < m; e++) {
+                current += times[e] * flows[e];
+                shortest += times[e] * target[e];
+            }
+            gap = current > 0 ? (current - shortest) / current : 0;
+            gaps[iteration++] = gap;
+            if (gap < gapTolerance) {
+                break;
+            }
+
+            if (conjugate && previousTarget != null) {
+                // Make the new direction conjugate to the previous one w.r.t. the (diagonal) Hessian
+                double numerator = 0, denominator = 0;
+                for (int e = 0; e < m; e++) {
+                    double h = vdf.derivative(e, flows[e]);
+                    numerator += (previousTarget[e] - flows[e]) * h * (target[e] - flows[e]);
+                    denominator += (previousTarget[e] - flows[e]) * h * (target[e] - previousTarget[e]);
+                }
+                double alpha = denominator != 0 ? numerator / denominator : 0;
+                alpha = Math.max(0, Math.min(CONJUGATE_LIMIT, alpha));
+                for (int e = 0; e < m; e++) {
+                    target[e] = alpha * previousTarget[e] + (1 - alpha) * target[e];
+                }
+            }
+            for (int e = 0; e < m; e++) {
+                direction[e] = target[e] - flows[e];
+            }
+
+            double step = lineSearch(vdf, flows, direction);
+            for (int e = 0; e < m; e++) {
+                flows[e] += step * direction[e];
+            }
+            if (conjugate) {
+                if (previousTarget == null) previousTarget = new double[m];
+                System.arraycopy(target, 0, previousTarget, 0, m);
+            }
+        }
+
+        updateTimes(vdf, flows, times);
+        double total = 0;
+        for (int e = 0; e < m; e++) total += flows[e] * times[e];
+        return new AssignmentResult(flows, times, iteration, gap, gap < gapTolerance, Arrays.copyOf(gaps, iteration),
+            unassigned, total, (System.nanoTime() - startTime) / 1_000_000.0);
+    }
+
+    private static void updateTimes(VolumeDelayFunction vdf, double[] flows, double[] times) {
+        for (int e = 0; e < times.length; e++) {
+            times[e] = vdf.travelTime(e, flows[e]);
+        }
+    }
+
+    /**
+     * Step in [0, 1] minimizing the Beckmann objective along the direction, by
+     * bisection on its derivative sum(t_e(x + step * d) * d_e).
+     */
+    private static double lineSearch(VolumeDelayFunction vdf, double[] flows, double[] direction) {
+        double low = 0, high = 1;
+        if (slope(vdf, flows, direction, 1) <= 0) {
+            return 1;
+        }
+        for (int i = 0; i < LINE_SEARCH_STEPS; i++) {
+            double mid = (low + high) / 2;
+            if (slope(vdf, flows, direction, mid) > 0) high = mid; else low = mid;
+        }
+        return (low + high) / 2;
+    }
+
+    private static double slope(VolumeDelayFunction vdf, double[] flows, double[] direction, double step) {
+        double sum = 0;
+        for (int e = 0; e < flows.length; e++) {
+            if (direction[e] != 0) sum += vdf.travelTime(e, flows[e] + step * direction[e]) * direction[e];
+        }
+        return sum;
+    }
+
+    /**
+     * Loads every origin's demand onto its shortest-path tree under the given
+     * times. Returns the demand that could not be assigned.
+     */
+    static double allOrNothing(CompactGraph graph, OriginTable origins, double[] times, double[] load) {
+        int m = graph.edgeCount();
+        // Flows per edge, plus the unassigned demand in the last slot
+        double[] sums = new double[m + 1];
+        ParallelPartitions.sum(origins.count(), sums, (from, to, flows) -> {
+            double[] nodeLoad = new double[graph.nodeCount()];
+            int[] order = new int[graph.nodeCount()];
+            boolean[] wanted = new boolean[graph.nodeCount()];
+            SearchSpace space = SearchSpace.forCurrentThread(graph);
+            for (int i = from; i < to; i++) {
+                space.start(times, false);
+                space.addSource(origins.origin(i), 0.0);
+                for (int k = origins.start(i); k < origins.start(i + 1); k++) {
+                    wanted[origins.destination(k)] = true;
+                }
+                // Grow the tree only until every destination of this origin is settled
+                int remaining = origins.start(i + 1) - origins.start(i);
+                int settled = 0;
+                for (int v; remaining > 0 && (v = space.settleNext()) != -1; ) {
+                    order[settled++] = v;
+                    if (wanted[v]) {
+                        wanted[v] = false;
+                        remaining--;
+                    }
+                }
+
+                for (int k = origins.start(i); k < origins.start(i + 1); k++) {
+                    wanted[origins.destination(k)] = false;
+                    int destination = origins.destination(k);
+                    if (space.isSettled(destination)) {
+                        nodeLoad[destination] += origins.volume(k);
+                    } else {
+                        flows[m] += origins.volume(k);
+                    }
+                }
+                // Push loads up the tree, leaves first
+                for (int s = settled - 1; s > 0; s--) {
+                    int v = order[s];
+                    if (nodeLoad[v] == 0) continue;
+                    int e = space.parentEdge(v);
+                    flows[e] += nodeLoad[v];
+                    nodeLoad[graph.tail[e]] += nodeLoad[v];
+                    nodeLoad[v] = 0;
+                }
+                nodeLoad[order[0]] = 0;
+            }
+        });
+
+        System.arraycopy(sums, 0, load, 0, m);
+        return sums[m];
+    }
+
+    // Demand flattened into arrays: origin i has destinations start(i) .. start(i + 1) - 1
+    static final class OriginTable {
+        private final int[] origins;
+        private final int[] starts;
+        private final int[] destinations;
+        private final double[] volumes;
+
+        OriginTable(Demand demand) {
+            origins = new int[demand.byOrigin.size()];
+            starts = new int[origins.length + 1];
+            destinations = new int[demand.pairs()];
+            volumes = new double[destinations.length];
+            int i = 0, k = 0;
+            for (Map.Entry<Integer, Map<Integer, Double>> row : demand.byOrigin.entrySet()) {
+                origins[i] = row.getKey();
+                for (Map.Entry<Integer, Double> cell : row.getValue().entrySet()) {
+                    destinations[k] = cell.getKey();
+                    volumes[k++] = cell.getValue();
+                }
+                starts[++i] = k;
+            }
+        }
+
+        int count() {
+            return origins.length;
+        }
+
+        int origin(int i) {
+            return origins[i];
+        }
+
+        int start(int i) {
+            return starts[i];
+        }
+
+        int destination(int k) {
+            return destinations[k];
+        }
+
+        double volume(int k) {
+            return volumes[k];
+        }
+    }
+}
@@ -0,0 +1,508 @@
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TrafficBucketScheduler - rebuilds traffic-dependent data ahead of each hour
+ * ---------------------------------------------------------------------------
+ * Traffic factors change every hour (TrafficSimulator), so cost arrays and
+ * precomputed routes go stale at each boundary. Rebuilding them on the first
+ * query of the hour would put that cost on a user request, and the worst
+ * boundaries (08:00, 17:00) are exactly when requests peak.
+ *
+ * How it works:
+ * - A Snapshot holds everything for one hourly bucket: the compiled float edge
+ *   costs of every profile (CompiledCostModel) and the routes of the hot pairs. Snapshots are
+ *   immutable and published through a single volatile field.
+ * - A background thread builds the next bucket's snapshot LEAD_TIME before the
+ *   boundary and swaps it in at the boundary with one write. Queries read
+ *   whichever snapshot is current and never wait for a build.
+ * - Hot pairs are the registered pairs plus the pairs queried most during the
+ *   current bucket. Hot routes that share a start are found with one search.
+ * - Other pairs cost one search on the snapshot's cost array.
+ * - Snapshots record the graph version and the traffic and weather versions of
+ *   their hour. Live observations only count while the live window covers the
+ *   hour, so a feed tick for another hour does not make a snapshot stale. When
+ *   the hour's factors change (live feed, learned model, seeded factors, weather
+ *   update) a background refresh runs, at most once per MIN_REFRESH; queries keep
+ *   using the old snapshot meanwhile. This also applies at the boundary: a
+ *   prepared snapshot whose factors moved is swapped in, then refreshed.
+ * - After a graph change the old snapshot may route over removed walkways, so
+ *   queries wait for one shared rebuild for the new version (a CompletableFuture)
+ *   rather than each compiling its own costs.
+ */
+public class TrafficBucketScheduler implements AutoCloseable {
+    // Profile name for walkers without accessibility needs
+    static final String STANDARD = CompiledCostModel.STANDARD;
+    // How long before a boundary the next bucket is built
+    static final Duration LEAD_TIME = Duration.ofMinutes(2);
+    // Minimum time between refreshes caused by traffic or weather changes
+    static final Duration MIN_REFRESH = Duration.ofSeconds(30);
+    static final int DEFAULT_HOT_ROUTES = 256;
+
+    /**
+     * Route for one bucket. Shared between callers, so it is immutable.
+     */
+    public static final class BucketRoute {
+        public final List<String> path;       // Location names, start to end
+        public final double travelTime;       // Seconds with the bucket's traffic, the weather and the profile's factors
+        public final double distance;         // Meters
+        public final int bucket;              // Hour of day the costs were built for
+        public final boolean precomputed;     // Served from the snapshot without a search
+
+        public BucketRoute(List<String> path, double travelTime, double distance, int bucket, boolean precomputed) {
+            this.path = Collections.unmodifiableList(path);
+            this.travelTime = travelTime;
+            this.distance = distance;
+            this.bucket = bucket;
+            this.precomputed = precomputed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%.0fs, %.0fm, bucket %02d:00)", path, travelTime, distance, bucket);
+        }
+    }
+
+    /**
+     * Everything precomputed for one bucket and graph version.
+     */
+    public static final class Snapshot {
+        public final int bucket;                           // Hour of day
+        public final LocalTime startTime;                  // Time the traffic factors were taken at
+        public final long graphVersion;
+        public final long trafficVersion;                  // TrafficSimulator.factorVersion(startTime) at build
+        public final long weatherVersion;                  // WeatherIntegration.version() at build
+        public final double buildMillis;                   // Time the background build took
+        final CompiledCostModel costs;                     // Compiled for this bucket's hour only
+        final Map<RouteKey, BucketRoute> routes;           // Hot pairs (null value = no path)
+
+        Snapshot(int bucket, LocalTime startTime, long graphVersion, long trafficVersion, long weatherVersion,
+            double buildMillis, CompiledCostModel costs, Map<RouteKey, BucketRoute> routes) {
+            this.bucket = bucket;
+            this.startTime = startTime;
+            this.graphVersion = graphVersion;
+            this.trafficVersion = trafficVersion;
+            this.weatherVersion = weatherVersion;
+            this.buildMillis = buildMillis;
+            this.costs = costs;
+            this.routes = routes;
+        }
+
+        /**
+         * Edge travel times for a profile (shared; do not modify), or null if
+         * the profile is not precomputed.
+         */
+        public float[] costs(String profile) {
+            return costs.profileIndex(profile) < 0 ? null : costs.costs(profile, bucket);
+        }
+
+        // Whether traffic or weather for this hour changed since the build
+        boolean factorsChanged() {
+            return trafficVersion != TrafficSimulator.factorVersion(startTime) || weatherVersion != WeatherIntegration.version();
+        }
+
+        public int hotRoutes() {
+            return routes.size();
+        }
+    }
+
+    /**
+     * Counters since the scheduler was started.
+     */
+    public static class SchedulerStats {
+        public long precomputed;      // Queries answered from a snapshot's hot routes
+        public long searched;         // Queries answered with one search on snapshot costs
+        public long waited;           // Queries that waited for the shared rebuild after a graph change
+        public long swaps;            // Bucket boundaries crossed
+        public long rebuilds;         // Snapshots rebuilt after graph changes or stale preparations
+        public long refreshes;        // Snapshots refreshed after traffic or weather changes
+        public int bucket;            // Hour of the current snapshot
+        public double lastBuildMillis;
+
+        public SchedulerStats(long precomputed, long searched, long waited, long swaps, long rebuilds, long refreshes,
+            int bucket, double lastBuildMillis) {
+            this.precomputed = precomputed;
+            this.searched = searched;
+            this.waited = waited;
+            this.swaps = swaps;
+            this.rebuilds = rebuilds;
+            this.refreshes = refreshes;
+            this.bucket = bucket;
+            this.lastBuildMillis = lastBuildMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("bucket=%02d:00 precomputed=%d searched=%d waited=%d swaps=%d rebuilds=%d refreshes=%d lastBuild=%.1fms",
+                bucket, precomputed, searched, waited, swaps, rebuilds, refreshes, lastBuildMillis);
+        }
+    }
+
+    // (profile, start, end) of a query
+    static final class RouteKey {
+        final String profile;
+        final String start;
+        final String end;
+        private final int hash;
+
+        RouteKey(String profile, String start, String end) {
+            this.profile = profile;
+            this.start = start;
+            this.end = end;
+            this.hash = Objects.hash(profile, start, end);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof RouteKey)) return false;
+            RouteKey other = (RouteKey) obj;
+            return hash == other.hash && profile.equals(other.profile) && start.equals(other.start) && end.equals(other.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final Graph graph;
+    private final List<String> profiles;
+    private final int maxHotRoutes;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+    private final Set<RouteKey> registered = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    // Rebuild after a graph change that queries are waiting for (null = none running)
+    private final AtomicReference<CompletableFuture<Snapshot>> graphRebuild = new AtomicReference<>();
+
+    private volatile Snapshot current;
+    private volatile long lastBuildNanos;
+    private volatile Map<RouteKey, LongAdder> requestCounts = new ConcurrentHashMap<>();
+    private Snapshot prepared;                 // Next bucket, touched only by the scheduler thread
+    private boolean started;
+
+    private final LongAdder precomputed = new LongAdder();
+    private final LongAdder searched = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+    private final LongAdder swaps = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    /**
+     * @param accessibilityTypes Profiles to precompute besides STANDARD (e.g. "wheelchair")
+     */
+    public TrafficBucketScheduler(Graph graph, String... accessibilityTypes) {
+        this(graph, Arrays.asList(accessibilityTypes), DEFAULT_HOT_ROUTES, Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param maxHotRoutes Routes precomputed per bucket (registered pairs count first)
+     * @param clock        Source of the wall-clock time that decides bucket boundaries
+     */
+    public TrafficBucketScheduler(Graph graph, Collection<String> accessibilityTypes, int maxHotRoutes, Clock clock) {
+        this.graph = graph;
+        List<String> names = new ArrayList<>();
+        names.add(STANDARD);
+        for (String type : accessibilityTypes) {
+            if (!names.contains(type)) names.add(type);
+        }
+        this.profiles = Collections.unmodifiableList(names);
+        this.maxHotRoutes = maxHotRoutes;
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "bucket-precompute");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Builds the snapshot for the current bucket (on the calling thread, once)
+     * and schedules the following ones in the background.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        ZonedDateTime bucketStart = ZonedDateTime.now(clock).truncatedTo(ChronoUnit.HOURS);
+        current = build(bucketStart.toLocalTime(), false);
+        scheduleNext(bucketStart.plusHours(1));
+    }
+
+    /**
+     * Always precomputes this pair, in addition to the most requested ones.
+     */
+    public void addHotRoute(String start, String end, String profile) {
+        registered.add(new RouteKey(profile, start, end));
+    }
+
+    /**
+     * Route for the current bucket, or null if there is no path or a location
+     * is unknown.
+     * @param profile STANDARD or one of the accessibility types given at construction
+     */
+    public BucketRoute route(String start, String end, String profile) {
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            throw new IllegalStateException("TrafficBucketScheduler has not been started");
+        }
+        if (!profiles.contains(profile)) {
+            throw new IllegalArgumentException("Profile not precomputed: " + profile);
+        }
+        RouteKey key = new RouteKey(profile, start, end);
+        requestCounts.computeIfAbsent(key, k -> new LongAdder()).increment();
+
+        if (snapshot.graphVersion != graph.getVersion()) {
+            // Walkways changed: share one rebuild instead of each query compiling its own costs
+            waited.increment();
+            snapshot = awaitGraphRebuild();
+        } else if (snapshot.factorsChanged()) {
+            requestRefresh();
+        }
+        if (snapshot.routes.containsKey(key)) {
+            precomputed.increment();
+            return snapshot.routes.get(key);
+        }
+        searched.increment();
+        return search(snapshot.costs, profile, snapshot.bucket, start, end);
+    }
+
+    // Snapshot currently served
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    public SchedulerStats stats() {
+        Snapshot snapshot = current;
+        return new SchedulerStats(precomputed.sum(), searched.sum(), waited.sum(), swaps.sum(), rebuilds.sum(),
+            refreshes.sum(), snapshot == null ? -1 : snapshot.bucket, snapshot == null ? 0 : snapshot.buildMillis);
+    }
+
+    /**
+     * Stops the background builds. Queries waiting for a graph rebuild that was
+     * still queued fail with an IllegalStateException instead of hanging.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        CompletableFuture<Snapshot> pending = graphRebuild.getAndSet(null);
+        if (pending != null) {
+            // No-op if the rebuild was already running and finishes normally
+            pending.completeExceptionally(new IllegalStateException("TrafficBucketScheduler is closed"));
+        }
+    }
+
+    // Builds the bucket starting at boundary LEAD_TIME early, then swaps it in at the boundary
+    private void scheduleNext(ZonedDateTime boundary) {
+        long untilBoundary = Math.max(0, Duration.between(ZonedDateTime.now(clock), boundary).toMillis());
+        long untilPrepare = Math.max(0, untilBoundary - LEAD_TIME.toMillis());
+        try {
+            executor.schedule(() -> prepare(boundary), untilPrepare, TimeUnit.MILLISECONDS);
+            executor.schedule(() -> swap(boundary), untilBoundary, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed
+        }
+    }
+
+    private void prepare(ZonedDateTime boundary) {
+        try {
+            prepared = build(boundary.toLocalTime(), true);
+        } catch (RuntimeException e) {
+            prepared = null;   // The swap builds it instead
+        }
+    }
+
+    private void swap(ZonedDateTime boundary) {
+        ZonedDateTime next = boundary;
+        try {
+            Snapshot snapshot = prepared;
+            prepared = null;
+            ZonedDateTime now = ZonedDateTime.now(clock);
+            if (!now.isBefore(boundary.plusHours(1))) {
+                // Missed whole buckets (e.g. the machine was suspended): jump to the current one
+                next = now.truncatedTo(ChronoUnit.HOURS);
+                snapshot = null;
+            }
+            // A graph change since the preparation could route over removed walkways: rebuild now
+            if (snapshot == null || snapshot.graphVersion != graph.getVersion()) {
+                snapshot = build(next.toLocalTime(), false);
+                rebuilds.increment();
+            }
+            current = snapshot;
+            swaps.increment();
+            // Traffic or weather moved since the preparation (e.g. live observations now cover
+            // the new hour): serve the prepared costs and refresh them in the background
+            if (snapshot.factorsChanged()) {
+                requestRefresh();
+            }
+        } catch (RuntimeException e) {
+            // Keep serving the previous snapshot; the next boundary tries again
+        } finally {
+            scheduleNext(next.plusHours(1));
+        }
+    }
+
+    // Snapshot for the graph's current version, waiting for (or starting) the shared rebuild
+    private Snapshot awaitGraphRebuild() {
+        Snapshot snapshot = current;
+        while (snapshot.graphVersion != graph.getVersion()) {
+            try {
+                snapshot = graphRebuild().join();
+            } catch (CompletionException e) {
+                // Rethrow the build's own failure (or the closed scheduler's)
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        return snapshot;
+    }
+
+    private CompletableFuture<Snapshot> graphRebuild() {
+        while (true) {
+            CompletableFuture<Snapshot> pending = graphRebuild.get();
+            if (pending != null) {
+                return pending;
+            }
+            CompletableFuture<Snapshot> future = new CompletableFuture<>();
+            if (!graphRebuild.compareAndSet(null, future)) {
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        Snapshot snapshot = current;
+                        if (snapshot.graphVersion != graph.getVersion()) {
+                            snapshot = build(snapshot.startTime, false);
+                            current = snapshot;
+                            rebuilds.increment();
+                        }
+                        graphRebuild.set(null);
+                        future.complete(snapshot);
+                    } catch (RuntimeException e) {
+                        graphRebuild.set(null);
+                        future.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                graphRebuild.set(null);
+                future.completeExceptionally(new IllegalStateException("TrafficBucketScheduler is closed"));
+            }
+            return future;
+        }
+    }
+
+    // Rebuilds with the new traffic/weather factors in the background, at most once per MIN_REFRESH
+    private void requestRefresh() {
+        if (!refreshQueued.compareAndSet(false, true)) {
+            return;
+        }
+        long sinceBuild = System.nanoTime() - lastBuildNanos;
+        long delay = Math.max(0, MIN_REFRESH.toNanos() - sinceBuild);
+        try {
+            executor.schedule(() -> {
+                refreshQueued.set(false);
+                Snapshot snapshot = current;
+                if (snapshot.factorsChanged() && snapshot.graphVersion == graph.getVersion()) {
+                    current = build(snapshot.startTime, false);
+                    refreshes.increment();
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            refreshQueued.set(false);
+        }
+    }
+
+    /**
+     * Cost arrays and hot routes for the bucket starting at time.
+     * @param newBucket true when preparing the next bucket (request counts start over)
+     */
+    private Snapshot build(LocalTime time, boolean newBucket) {
+        long startTime = System.nanoTime();
+        lastBuildNanos = startTime;
+        // Versions read first: a change during the build leaves the snapshot stale, not wrong
+        long version = graph.getVersion();
+        long traffic = TrafficSimulator.factorVersion(time);
+        long weather = WeatherIntegration.version();
+        CompactGraph compact = graph.toCompact();
+        int bucket = time.getHour();
+
+        CompiledCostModel costs = CompiledCostModel.compile(compact, profiles, bucket);
+
+        // One search per (profile, start) covering all of its hot destinations
+        Map<String, Map<Integer, Set<Integer>>> byStart = new LinkedHashMap<>();
+        for (RouteKey key : hotRoutes(newBucket)) {
+            int s = compact.indexOf(key.start);
+            int t = compact.indexOf(key.end);
+            if (s >= 0 && t >= 0 && costs.profileIndex(key.profile) >= 0) {
+                byStart.computeIfAbsent(key.profile, p -> new LinkedHashMap<>())
+                    .computeIfAbsent(s, k -> new LinkedHashSet<>()).add(t);
+            }
+        }
+        Map<RouteKey, BucketRoute> routes = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, Set<Integer>>> profile : byStart.entrySet()) {
+            float[] profileCosts = costs.costs(profile.getKey(), bucket);
+            for (Map.Entry<Integer, Set<Integer>> start : profile.getValue().entrySet()) {
+                Map<Integer, BucketRoute> found = searchFrom(compact, profileCosts, bucket, start.getKey(), start.getValue(), true);
+                for (int t : start.getValue()) {
+                    routes.put(new RouteKey(profile.getKey(), compact.name(start.getKey()), compact.name(t)), found.get(t));
+                }
+            }
+        }
+        return new Snapshot(bucket, time, version, traffic, weather, (System.nanoTime() - startTime) / 1_000_000.0, costs, routes);
+    }
+
+    // Registered pairs first, then the most requested ones up to maxHotRoutes
+    private List<RouteKey> hotRoutes(boolean newBucket) {
+        Map<RouteKey, LongAdder> counts = requestCounts;
+        if (newBucket) {
+            requestCounts = new ConcurrentHashMap<>();
+        }
+        List<RouteKey> hot = new ArrayList<>(registered);
+        counts.entrySet().stream()
+            .filter(entry -> !registered.contains(entry.getKey()))
+            .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+            .limit(Math.max(0, maxHotRoutes - hot.size()))
+            .forEach(entry -> hot.add(entry.getKey()));
+        return hot;
+    }
+
+    private static BucketRoute search(CompiledCostModel costs, String profile, int bucket, String start, String end) {
+        int s = costs.graph.indexOf(start);
+        int t = costs.graph.indexOf(end);
+        if (s < 0 || t < 0) {
+            return null;
+        }
+        return searchFrom(costs.graph, costs.costs(profile, bucket), bucket, s, Collections.singleton(t), false).get(t);
+    }
+
+    // Dijkstra from source until every target is settled; unreachable targets map to null
+    private static Map<Integer, BucketRoute> searchFrom(CompactGraph graph, float[] costs, int bucket, int source,
+        Set<Integer> targets, boolean precomputed) {
+        SearchSpace space = SearchSpace.forCurrentThread(graph);
+        space.startCompiled(costs, false);
+        space.addSource(source, 0.0);
+        int remaining = targets.size();
+        for (int v; remaining > 0 && (v = space.settleNext()) != -1; ) {
+            if (targets.contains(v)) remaining--;
+        }
+        Map<Integer, BucketRoute> routes = new HashMap<>();
+        for (int t : targets) {
+            if (!space.isSettled(t)) {
+                routes.put(t, null);
+                continue;
+            }
+            double distance = 0;
+            for (int v = t, e; (e = space.parentEdge(v)) != -1; v = graph.tail[e]) {
+                distance += graph.weight[e];
+            }
+            routes.put(t, new BucketRoute(graph.pathNames(space.pathTo(t)), space.distance(t), distance, bucket, precomputed));
+        }
+        return routes;
+    }
+}
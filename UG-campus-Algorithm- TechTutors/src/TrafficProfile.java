@@ -0,0 +1,165 @@
+import java.time.LocalTime;
+
+/**
+ * TrafficProfile - compact time-dependent edge travel times for a CompactGraph
+ * ----------------------------------------------------------------------------
+ * Travel time of edge u -> v when entered at time t (seconds since midnight):
+ *     baseSeconds[e] * factor(v, t)
+ * where factor(v, t) is the TrafficSimulator congestion factor at v, sampled at
+ * every hour's midpoint and linearly interpolated in between (wrapping at
+ * midnight). Storage is one float per node per hour plus one double per edge,
+ * instead of a separate profile for every edge.
+ *
+ * FIFO (entering later never gets you there earlier) holds whenever congestion
+ * drops slowly enough relative to the edge length. Edges where a steep drop
+ * would break it are flagged and evaluated with waiting allowed: the arrival is
+ * the earliest over "leave now" and "wait until a later breakpoint".
+ */
+public class TrafficProfile {
+    static final int HOURS = 24;
+    static final int DAY_SECONDS = 24 * 3600;
+
+    final CompactGraph graph;
+    final double[] baseSeconds;     // Edge -> free-flow walking time
+    final float[] nodeFactors;      // Node * HOURS + hour -> factor at hh:30
+    final boolean[] needsWaiting;   // Edge -> FIFO must be enforced by allowing waits
+
+    // Last profile built from the TrafficSimulator, reused while its inputs are unchanged
+    private static volatile SimulatorProfile simulatorProfile;
+
+    /**
+     * @param nodeFactors Node * HOURS + hour -> congestion factor at the middle of that hour
+     */
+    public TrafficProfile(CompactGraph graph, float[] nodeFactors) {
+        if (nodeFactors.length != graph.nodeCount() * HOURS) {
+            throw new IllegalArgumentException("Expected " + HOURS + " factors per node");
+        }
+        this.graph = graph;
+        this.nodeFactors = nodeFactors;
+        int m = graph.edgeCount();
+        baseSeconds = new double[m];
+        needsWaiting = new boolean[m];
+
+        // Steepest drop in factor per second at each node
+        double[] maxDrop = new double[graph.nodeCount()];
+        for (int v = 0; v < maxDrop.length; v++) {
+            for (int h = 0; h < HOURS; h++) {
+                double drop = (nodeFactors[v * HOURS + h] - nodeFactors[v * HOURS + (h + 1) % HOURS]) / 3600.0;
+                maxDrop[v] = Math.max(maxDrop[v], drop);
+            }
+        }
+        for (int e = 0; e < m; e++) {
+            baseSeconds[e] = graph.weight[e] * EdgeCostModel.SECONDS_PER_METER;
+            needsWaiting[e] = baseSeconds[e] * maxDrop[graph.head[e]] > 1.0;
+        }
+    }
+
+    /**
+     * Profile from the TrafficSimulator location and time-of-day factors.
+     */
+    public static TrafficProfile fromTrafficSimulator(CompactGraph graph) {
+        float[] factors = new float[graph.nodeCount() * HOURS];
+        for (int v = 0; v < graph.nodeCount(); v++) {
+            for (int h = 0; h < HOURS; h++) {
+                factors[v * HOURS + h] = (float) TrafficSimulator.calculateTrafficFactor(graph.name(v), LocalTime.of(h, 30));
+            }
+        }
+        return new TrafficProfile(graph, factors);
+    }
+
+    /**
+     * As fromTrafficSimulator, but shared across queries: rebuilt only when the graph
+     * snapshot, a TrafficSimulator factor source (factorVersion) or the hours covered
+     * by live traffic change, instead of O(V * HOURS + E) work on every query.
+     * Do not modify the returned profile.
+     */
+    public static TrafficProfile cachedFromTrafficSimulator(CompactGraph graph) {
+        long factorVersion = TrafficSimulator.factorVersion();
+        int liveHours = liveHours();
+        SimulatorProfile cached = simulatorProfile;
+        if (cached == null || cached.profile.graph != graph || cached.factorVersion != factorVersion
+            || cached.liveHours != liveHours) {
+            cached = new SimulatorProfile(fromTrafficSimulator(graph), factorVersion, liveHours);
+            simulatorProfile = cached;
+        }
+        return cached.profile;
+    }
+
+    // Bit h set when the hh:30 sample comes from live traffic
+    private static int liveHours() {
+        int mask = 0;
+        for (int h = 0; h < HOURS; h++) {
+            if (TrafficSimulator.usesLiveTraffic(LocalTime.of(h, 30))) {
+                mask |= 1 << h;
+            }
+        }
+        return mask;
+    }
+
+    // Congestion factor at node v at time t (seconds, any day)
+    public double factor(int v, double t) {
+        double x = (Math.floorMod((long) Math.floor(t), DAY_SECONDS) + (t - Math.floor(t)) - 1800.0) / 3600.0;
+        int h0 = (int) Math.floor(x);
+        double fraction = x - h0;
+        int base = v * HOURS;
+        double f0 = nodeFactors[base + Math.floorMod(h0, HOURS)];
+        double f1 = nodeFactors[base + Math.floorMod(h0 + 1, HOURS)];
+        return f0 + (f1 - f0) * fraction;
+    }
+
+    // Travel time of an edge entered at time t, without waiting
+    public double travelTime(int edge, double t) {
+        return baseSeconds[edge] * factor(graph.head[edge], t);
+    }
+
+    /**
+     * Earliest arrival at the head of the edge when reaching its tail at time t.
+     * Non-decreasing in t for every edge (FIFO).
+     */
+    public double arrival(int edge, double t) {
+        double best = t + travelTime(edge, t);
+        if (needsWaiting[edge]) {
+            // Between breakpoints the arrival is linear, so the best wait ends at one of them
+            double next = Math.floor((t - 1800.0) / 3600.0) * 3600.0 + 1800.0 + 3600.0;
+            for (int i = 0; i < HOURS; i++, next += 3600.0) {
+                if (next >= best) break;
+                best = Math.min(best, next + travelTime(edge, next));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * First time after t where arrival(edge, .) changes slope. arrival is linear
+     * between consecutive breakpoints, which is what profile searches rely on.
+     */
+    public double nextBreakpoint(int edge, double t) {
+        double previous = Math.floor((t - 1800.0) / 3600.0) * 3600.0 + 1800.0;
+        double next = previous + 3600.0;
+        if (needsWaiting[edge]) {
+            // Within an hour, arrival = min(leave now, best wait), which can kink once
+            double waited = arrival(edge, next);
+            double nowAtStart = previous + travelTime(edge, previous);
+            double nowAtEnd = next + travelTime(edge, next);
+            if (nowAtStart < waited && waited < nowAtEnd) {
+                double crossing = previous + (waited - nowAtStart) / (nowAtEnd - nowAtStart) * 3600.0;
+                if (crossing > t) {
+                    return crossing;
+                }
+            }
+        }
+        return next;
+    }
+
+    private static final class SimulatorProfile {
+        final TrafficProfile profile;
+        final long factorVersion;   // TrafficSimulator.factorVersion() read before the build
+        final int liveHours;
+
+        SimulatorProfile(TrafficProfile profile, long factorVersion, int liveHours) {
+            this.profile = profile;
+            this.factorVersion = factorVersion;
+            this.liveHours = liveHours;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * TrafficSimulator.java
@@ -10,6 +11,10 @@ import java.util.*;
  * Features:
  * ✅ Models traffic conditions based on location and time.
  * ✅ Adjusts travel times dynamically according to congestion factors.
+ * ✅ Location-specific busy hours (e.g. Night Market evenings, Main Gate mornings).
+ * ✅ Uses live observed factors (LiveTraffic) for departures happening now.
+ * ✅ Uses factors learned from trip logs (TripLogAggregator) where there is enough data.
+ * ✅ Location factors can be seeded from network centrality (BetweennessCentrality).
  * ✅ Suggests better departure times when traffic is high.
  * ✅ Finds top 3 optimal departure times for a given route.
  * ✅ Generates human-readable traffic reports with severity levels.
@@ -54,11 +59,24 @@ public class TrafficSimulator {
     }
     
     // Predefined traffic factors for specific locations on campus/area
-    private static Map<String, Double> locationTrafficFactors = new HashMap<>();
+    // (replaced as a whole by seedLocationFactors, never modified after startup)
+    private static volatile Map<String, Double> locationTrafficFactors = new HashMap<>();
     
     // Predefined traffic factors based on time of day (hourly)
     private static Map<LocalTime, Double> timeTrafficFactors = new HashMap<>();
     
+    // Extra hourly multipliers for locations whose busy hours differ from the campus-wide pattern
+    private static Map<String, Map<Integer, Double>> locationPeakFactors = new HashMap<>();
+    
+    // Live observations, when a feed is connected (null = use the predefined factors only)
+    private static volatile LiveTraffic liveTraffic;
+    
+    // Factors learned from trip logs (null = use the predefined estimates)
+    private static volatile TripLogAggregator.TrafficModel learnedModel;
+    
+    // Bumped whenever a factor source is replaced (see factorVersion)
+    private static final AtomicLong settingsVersion = new AtomicLong();
+    
     // Static block ensures traffic data is loaded once at startup
     static {
         initializeTrafficData();
@@ -91,6 +109,92 @@ public class TrafficSimulator {
         timeTrafficFactors.put(LocalTime.of(16, 0), 1.6);
         timeTrafficFactors.put(LocalTime.of(17, 0), 1.9);
         timeTrafficFactors.put(LocalTime.of(18, 0), 1.7);
+        
+        // Location-specific busy (>1) and quiet (<1) hours
+        addPeak("Main Gate", 7, 8, 1.4);          // Morning arrivals
+        addPeak("Main Gate", 16, 17, 1.3);        // Evening departures
+        addPeak("JQB", 14, 18, 1.4);              // Afternoon lectures and evening classes
+        addPeak("Balme Library", 10, 16, 1.3);    // Study hours
+        addPeak("Akuafo Hall", 6, 8, 1.6);        // Residents heading out
+        addPeak("Legon Hall", 6, 8, 1.6);
+        addPeak("Bush Canteen", 12, 13, 1.5);     // Lunch
+        addPeak("Night Market", 6, 11, 0.6);      // Closed in the morning
+        addPeak("Night Market", 17, 22, 1.8);     // Evening market
+    }
+    
+    /**
+     * Replaces location congestion multipliers, e.g. with
+     * BetweennessCentrality.CentralityResult.suggestedTrafficFactors.
+     * Locations missing from the map keep their current factor. Readers see
+     * either the old or the new map, never a half-updated one.
+     */
+    public static synchronized void seedLocationFactors(Map<String, Double> factors) {
+        Map<String, Double> updated = new HashMap<>(locationTrafficFactors);
+        updated.putAll(factors);
+        locationTrafficFactors = updated;
+        bumpSettings();
+    }
+    
+    private static void addPeak(String location, int fromHour, int toHour, double factor) {
+        Map<Integer, Double> hours = locationPeakFactors.computeIfAbsent(location, k -> new HashMap<>());
+        for (int hour = fromHour; hour <= toHour; hour++) {
+            hours.put(hour, factor);
+        }
+    }
+    
+    /**
+     * Connects a live traffic layer. Departures inside its recent window use the
+     * observed factor of a location when there is one.
+     * @param live The live layer, or null to go back to the predefined factors
+     */
+    public static synchronized void useLiveTraffic(LiveTraffic live) {
+        LiveTraffic previous = liveTraffic;
+        // Skip past the old layer's version so factorVersion never repeats a value
+        settingsVersion.addAndGet(1 + (previous == null ? 0 : previous.version()));
+        liveTraffic = live;
+    }
+    
+    /**
+     * Publishes a traffic model learned from trip logs. Locations and hours with
+     * enough observations use the learned factor instead of the estimate.
+     * @param model The learned model, or null to go back to the predefined factors
+     */
+    public static synchronized void useLearnedModel(TripLogAggregator.TrafficModel model) {
+        learnedModel = model;
+        bumpSettings();
+    }
+    
+    // Whether calculateTrafficFactor uses live observations for this time
+    static boolean usesLiveTraffic(LocalTime time) {
+        LiveTraffic live = liveTraffic;
+        return live != null && live.covers(time);
+    }
+    
+    /**
+     * Changes whenever calculateTrafficFactor may return different values: a
+     * live, learned or seeded factor source is replaced, or the live layer
+     * publishes an observation. Precomputed costs compare it to detect staleness.
+     */
+    public static long factorVersion() {
+        LiveTraffic live = liveTraffic;
+        return settingsVersion.get() + (live == null ? 0 : live.version());
+    }
+    
+    /**
+     * As factorVersion, for the factors at one time of day only: live publications
+     * count only while the live window covers that time, so a feed tick does not
+     * make precomputed costs for other hours stale.
+     */
+    public static long factorVersion(LocalTime time) {
+        LiveTraffic live = liveTraffic;
+        return live != null && live.covers(time) ? settingsVersion.get() + live.version() : settingsVersion.get();
+    }
+    
+    // Skip past the live layer's version too, so factorVersion(time) never repeats
+    // a value when the live window stops covering a time
+    private static void bumpSettings() {
+        LiveTraffic live = liveTraffic;
+        settingsVersion.addAndGet(1 + (live == null ? 0 : live.version()));
     }
     
     /**
@@ -100,9 +204,24 @@ public class TrafficSimulator {
      * @return The effective traffic multiplier
      */
     public static double calculateTrafficFactor(String location, LocalTime time) {
+        LiveTraffic live = liveTraffic;
+        if (live != null && live.covers(time)) {
+            double observed = live.currentFactor(location);
+            if (!Double.isNaN(observed)) {
+                return observed; // Measured congestion replaces the estimate
+            }
+        }
+        TripLogAggregator.TrafficModel model = learnedModel;
+        if (model != null) {
+            double learned = model.locationFactor(location, time.getHour());
+            if (!Double.isNaN(learned)) {
+                return learned;
+            }
+        }
         double locationFactor = locationTrafficFactors.getOrDefault(location, 1.0); // Default = no extra traffic
         double timeFactor = getTimeFactor(time);
-        return locationFactor * timeFactor;
+        double peakFactor = locationPeakFactors.getOrDefault(location, Collections.emptyMap()).getOrDefault(time.getHour(), 1.0);
+        return locationFactor * timeFactor * peakFactor;
     }
     
     /**
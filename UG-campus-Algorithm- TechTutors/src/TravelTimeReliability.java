@@ -0,0 +1,269 @@
+import java.time.LocalTime;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * TravelTimeReliability - Monte Carlo travel-time percentiles for routes
+ * -----------------------------------------------------------------------
+ * TrafficSimulator.optimizeForTime gives one traffic-adjusted time. A walkway
+ * that is usually quick but sometimes jammed looks the same as one that is
+ * always average. This engine samples thousands of scenarios and reports how
+ * late you arrive in the typical (P50) and bad (P90, P95) cases.
+ *
+ * Edge time model (per scenario):
+ *     walking time x traffic draw x weather draw
+ * - Traffic: lognormal around the TrafficSimulator factor at departure time,
+ *   wider for more congested locations, times a campus-wide shock shared by
+ *   all edges in the scenario (crowds are correlated).
+ * - Weather: the WeatherIntegration slowdown scaled by a scenario-wide
+ *   intensity (a passing shower hits the whole route at once).
+ *
+ * Sampling:
+ * - Scenarios are drawn in blocks of BLOCK_SIZE, each from its own
+ *   SplittableRandom split from the seed in block order.
+ * - Each block works in primitive buffers (one draw per edge, then sums).
+ * - When comparing routes every candidate is evaluated on the same scenarios,
+ *   so differences come from the routes and not from sampling noise.
+ */
+public class TravelTimeReliability {
+    static final int DEFAULT_SCENARIOS = 10_000;
+    static final int CANDIDATE_ROUTES = 8;
+    private static final int BLOCK_SIZE = 1024;
+    // Lognormal spread of an edge's traffic factor: base + extra per unit of congestion
+    private static final double BASE_SPREAD = 0.08;
+    private static final double CONGESTION_SPREAD = 0.30;
+    // Spread of the campus-wide traffic shock and of the weather intensity
+    private static final double SHOCK_SPREAD = 0.10;
+    private static final double WEATHER_SPREAD = 0.50;
+
+    /**
+     * Travel-time distribution of one route.
+     */
+    public static class ReliabilityResult {
+        public List<String> path;         // Route
+        public LocalTime departure;       // Departure time the scenarios were drawn for
+        public int scenarios;             // Scenarios sampled
+        public double mean;               // Mean travel time (seconds)
+        public double stdDev;             // Standard deviation (seconds)
+        public double p50;                // Median travel time (seconds)
+        public double p90;                // 90th percentile (seconds)
+        public double p95;                // 95th percentile (seconds)
+        public double freeFlowTime;       // Walking time without traffic or weather
+
+        public ReliabilityResult(List<String> path, LocalTime departure, int scenarios, double mean, double stdDev,
+            double p50, double p90, double p95, double freeFlowTime) {
+            this.path = path;
+            this.departure = departure;
+            this.scenarios = scenarios;
+            this.mean = mean;
+            this.stdDev = stdDev;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p95 = p95;
+            this.freeFlowTime = freeFlowTime;
+        }
+
+        // Arrival clock time at a percentile (50, 90 or 95)
+        public LocalTime arrivalAt(int percentile) {
+            double seconds = percentile >= 95 ? p95 : percentile >= 90 ? p90 : p50;
+            return departure.plusSeconds(Math.round(seconds));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: P50 %s, P90 %s, P95 %s (mean %.0fs, sd %.0fs)", path,
+                arrivalAt(50), arrivalAt(90), arrivalAt(95), mean, stdDev);
+        }
+    }
+
+    /**
+     * Candidate routes ranked by 90th percentile, with the mean-optimal one for comparison.
+     */
+    public static class RouteChoice {
+        public List<ReliabilityResult> candidates;   // Sorted by P90
+        public ReliabilityResult mostReliable;       // Lowest P90
+        public ReliabilityResult fastestOnAverage;   // Lowest mean
+
+        public RouteChoice(List<ReliabilityResult> candidates, ReliabilityResult mostReliable, ReliabilityResult fastestOnAverage) {
+            this.candidates = candidates;
+            this.mostReliable = mostReliable;
+            this.fastestOnAverage = fastestOnAverage;
+        }
+    }
+
+    /**
+     * Percentiles of a given route (location names in order).
+     * @throws IllegalArgumentException if scenarios is not positive, a location is
+     *         unknown, or two consecutive locations are not connected
+     */
+    public static ReliabilityResult evaluate(Graph graph, List<String> path, LocalTime departure, int scenarios, long seed) {
+        checkScenarios(scenarios);
+        CompactGraph compact = graph.toCompact();
+        int[] nodes = new int[path.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compact.indexOf(path.get(i));
+            if (nodes[i] < 0) {
+                throw new IllegalArgumentException("Unknown location: " + path.get(i));
+            }
+        }
+        int[] edges = new int[Math.max(0, path.size() - 1)];
+        for (int i = 0; i + 1 < path.size(); i++) {
+            edges[i] = compact.findEdge(nodes[i], nodes[i + 1]);
+            if (edges[i] < 0) {
+                throw new IllegalArgumentException("No walkway from " + path.get(i) + " to " + path.get(i + 1));
+            }
+        }
+        return evaluate(compact, Collections.singletonList(edges), departure, scenarios, seed).get(0);
+    }
+
+    /**
+     * Looks at the k-shortest routes by expected time and picks the one with the
+     * best 90th percentile. Returns null if there is no path.
+     * @throws IllegalArgumentException if scenarios is not positive
+     */
+    public static RouteChoice mostReliable(Graph graph, Nodes start, Nodes end, LocalTime departure, int scenarios, long seed) {
+        checkScenarios(scenarios);
+        CompactGraph compact = graph.toCompact();
+        EdgeModel model = new EdgeModel(compact, departure);
+        List<KShortestPaths.PathResult> paths = KShortestPaths.find(compact, compact.indexOf(start), compact.indexOf(end),
+            CANDIDATE_ROUTES, model.expected);
+        if (paths.isEmpty()) {
+            return null;
+        }
+        List<int[]> routes = new ArrayList<>();
+        for (KShortestPaths.PathResult path : paths) routes.add(path.edges);
+
+        List<ReliabilityResult> results = new ArrayList<>(evaluate(compact, routes, departure, scenarios, seed));
+        ReliabilityResult fastest = Collections.min(results, Comparator.comparingDouble(r -> r.mean));
+        results.sort(Comparator.comparingDouble(r -> r.p90));
+        return new RouteChoice(results, results.get(0), fastest);
+    }
+
+    /**
+     * Samples all routes (edge id arrays) on the same scenarios.
+     * @throws IllegalArgumentException if scenarios is not positive
+     */
+    public static List<ReliabilityResult> evaluate(CompactGraph graph, List<int[]> routes, LocalTime departure,
+        int scenarios, long seed) {
+        checkScenarios(scenarios);
+        EdgeModel model = new EdgeModel(graph, departure);
+
+        // Only the edges some route uses are drawn; routes refer to them by slot
+        Map<Integer, Integer> slots = new LinkedHashMap<>();
+        int[][] routeSlots = new int[routes.size()][];
+        for (int r = 0; r < routes.size(); r++) {
+            int[] route = routes.get(r);
+            routeSlots[r] = new int[route.length];
+            for (int i = 0; i < route.length; i++) {
+                routeSlots[r][i] = slots.computeIfAbsent(route[i], e -> slots.size());
+            }
+        }
+        int[] slotEdges = slots.keySet().stream().mapToInt(Integer::intValue).toArray();
+
+        int blocks = (scenarios + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[blocks];
+        for (int b = 0; b < blocks; b++) randoms[b] = root.split();
+        double[][] totals = new double[routes.size()][scenarios];
+
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            SplittableRandom random = randoms[b];
+            double[] draws = new double[slotEdges.length];
+            int to = Math.min(scenarios, (b + 1) * BLOCK_SIZE);
+            for (int s = b * BLOCK_SIZE; s < to; s++) {
+                double shock = Math.exp(SHOCK_SPREAD * gaussian(random));
+                double intensity = Math.exp(WEATHER_SPREAD * gaussian(random) - WEATHER_SPREAD * WEATHER_SPREAD / 2);
+                for (int k = 0; k < slotEdges.length; k++) {
+                    int e = slotEdges[k];
+                    double traffic = model.traffic[e] * shock * Math.exp(model.spread[e] * gaussian(random));
+                    double weather = 1 + (model.weather[e] - 1) * intensity;
+                    draws[k] = model.walking[e] * traffic * weather;
+                }
+                for (int r = 0; r < routeSlots.length; r++) {
+                    double sum = 0;
+                    for (int slot : routeSlots[r]) sum += draws[slot];
+                    totals[r][s] = sum;
+                }
+            }
+        });
+
+        List<ReliabilityResult> results = new ArrayList<>(routes.size());
+        for (int r = 0; r < routes.size(); r++) {
+            double[] sample = totals[r];
+            double sum = 0, squares = 0;
+            for (double t : sample) {
+                sum += t;
+                squares += t * t;
+            }
+            double mean = sum / scenarios;
+            double variance = Math.max(0, squares / scenarios - mean * mean);
+            Arrays.sort(sample);
+            int[] route = routes.get(r);
+            double free = 0;
+            for (int e : route) free += model.walking[e];
+            results.add(new ReliabilityResult(pathNames(graph, route), departure, scenarios, mean, Math.sqrt(variance),
+                percentile(sample, 0.50), percentile(sample, 0.90), percentile(sample, 0.95), free));
+        }
+        return results;
+    }
+
+    // Per-edge parameters, looked up once per location rather than per draw
+    private static final class EdgeModel {
+        final double[] walking;       // Free walking time
+        final double[] traffic;       // Median traffic factor at the departure time
+        final double[] spread;        // Lognormal sigma of the traffic factor
+        final double[] weather;       // Weather slowdown at full intensity
+        final double[] expected;      // Typical travel time, used to pick candidate routes
+
+        EdgeModel(CompactGraph graph, LocalTime departure) {
+            int n = graph.nodeCount();
+            double[] nodeTraffic = new double[n];
+            double[] nodeWeather = new double[n];
+            for (int v = 0; v < n; v++) {
+                nodeTraffic[v] = TrafficSimulator.calculateTrafficFactor(graph.name(v), departure);
+                nodeWeather[v] = WeatherIntegration.calculateWeatherFactor(graph.name(v));
+            }
+            int m = graph.edgeCount();
+            walking = EdgeCostModel.walkingTimes(graph);
+            traffic = new double[m];
+            spread = new double[m];
+            weather = new double[m];
+            expected = new double[m];
+            for (int e = 0; e < m; e++) {
+                int v = graph.head[e];
+                traffic[e] = nodeTraffic[v];
+                spread[e] = BASE_SPREAD + CONGESTION_SPREAD * Math.max(0, nodeTraffic[v] - 1);
+                weather[e] = nodeWeather[v];
+                expected[e] = walking[e] * traffic[e] * weather[e];
+            }
+        }
+    }
+
+    // Standard normal draw (Box-Muller, one value per call)
+    private static double gaussian(SplittableRandom random) {
+        double u = 1.0 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    // Percentiles need at least one sample
+    private static void checkScenarios(int scenarios) {
+        if (scenarios <= 0) {
+            throw new IllegalArgumentException("Scenario count must be positive: " + scenarios);
+        }
+    }
+
+    private static double percentile(double[] sorted, double q) {
+        int index = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static List<String> pathNames(CompactGraph graph, int[] edges) {
+        List<String> names = new ArrayList<>(edges.length + 1);
+        if (edges.length == 0) {
+            return names;
+        }
+        names.add(graph.name(graph.tail[edges[0]]));
+        for (int e : edges) names.add(graph.name(graph.head[e]));
+        return names;
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * TripLogAggregator - learns traffic factors from observed walking times
+ * -----------------------------------------------------------------------
+ * Turns trip logs into per-walkway, per-hour statistics and publishes them as a
+ * TrafficModel that TrafficSimulator.calculateTrafficFactor can use instead of
+ * the hand-set estimates.
+ *
+ * Log format, one walkway traversal per line:
+ *     epochMillis,from,to,seconds
+ * The observed factor is seconds / (edge distance / 2), i.e. how much slower
+ * than free walking the traversal was.
+ *
+ * How it works:
+ * - Lines are streamed (Files.lines splits a file into chunks for a parallel
+ *   stream); nothing is kept per record.
+ * - Each chunk accumulates into its own partial: per (edge, hour) a running
+ *   count/mean/variance (Welford) and a log-scale histogram sketch with about
+ *   2.5% relative error for quantiles. Memory is constant per (edge, hour).
+ * - Partials are merged pairwise (Chan's formula for the variance, histogram
+ *   addition for the sketch), then frozen into an immutable TrafficModel.
+ */
+public class TripLogAggregator {
+    // Histogram sketch: factors from MIN_FACTOR to MIN_FACTOR * GAMMA^SKETCH_BUCKETS
+    static final double MIN_FACTOR = 0.25;
+    static final double GAMMA = 1.05;
+    static final int SKETCH_BUCKETS = 86;   // Up to about 16x
+    // Observations needed before a learned factor replaces the estimate
+    static final int MIN_SAMPLES = 30;
+    static final int HOURS = 24;
+
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private final CompactGraph graph;
+    private final ZoneId zone;
+
+    public TripLogAggregator(Graph graph) {
+        this(graph, ZoneId.systemDefault());
+    }
+
+    /**
+     * @param zone Time zone used to turn log timestamps into campus hours
+     */
+    public TripLogAggregator(Graph graph, ZoneId zone) {
+        this.graph = graph.toCompact();
+        this.zone = zone;
+    }
+
+    /**
+     * Learned per-walkway, per-hour statistics. Immutable once built.
+     */
+    public static class TrafficModel {
+        final CompactGraph graph;
+        final long[] counts;              // (edge * HOURS + hour) -> observations
+        final double[] means;             // Mean observed factor
+        final double[] variances;         // Sample variance of the factor
+        final int[][] sketches;           // Histogram sketch (null = no observations)
+        final double[] locationFactors;   // (node * HOURS + hour) -> factor into that location (NaN = too few samples)
+        public long records;              // Lines accepted
+        public long rejected;             // Malformed lines, unknown walkways or impossible durations
+
+        TrafficModel(Partial totals) {
+            this.graph = totals.graph;
+            this.counts = totals.counts;
+            this.means = totals.means;
+            this.sketches = totals.sketches;
+            this.records = totals.records;
+            this.rejected = totals.rejected;
+            this.variances = new double[counts.length];
+            for (int cell = 0; cell < counts.length; cell++) {
+                variances[cell] = counts[cell] > 1 ? totals.m2[cell] / (counts[cell] - 1) : 0.0;
+            }
+
+            // Location factor: observation-weighted mean over the walkways leading into it
+            int n = graph.nodeCount();
+            double[] sums = new double[n * HOURS];
+            long[] samples = new long[n * HOURS];
+            for (int e = 0; e < graph.edgeCount(); e++) {
+                for (int h = 0; h < HOURS; h++) {
+                    int cell = e * HOURS + h;
+                    sums[graph.head[e] * HOURS + h] += means[cell] * counts[cell];
+                    samples[graph.head[e] * HOURS + h] += counts[cell];
+                }
+            }
+            locationFactors = new double[n * HOURS];
+            for (int i = 0; i < locationFactors.length; i++) {
+                locationFactors[i] = samples[i] >= MIN_SAMPLES ? sums[i] / samples[i] : Double.NaN;
+            }
+        }
+
+        /**
+         * Learned factor for traffic into a location at an hour, or NaN if there
+         * are too few observations.
+         */
+        public double locationFactor(String location, int hour) {
+            int v = graph.indexOf(location);
+            return v < 0 ? Double.NaN : locationFactors[v * HOURS + hour];
+        }
+
+        public long samples(int edge, int hour) {
+            return counts[edge * HOURS + hour];
+        }
+
+        // Mean factor of a walkway at an hour (NaN if too few observations)
+        public double edgeFactor(int edge, int hour) {
+            int cell = edge * HOURS + hour;
+            return counts[cell] >= MIN_SAMPLES ? means[cell] : Double.NaN;
+        }
+
+        public double edgeStdDev(int edge, int hour) {
+            int cell = edge * HOURS + hour;
+            return counts[cell] >= MIN_SAMPLES ? Math.sqrt(variances[cell]) : Double.NaN;
+        }
+
+        /**
+         * Factor below which a fraction q of the observations fall (e.g. 0.9), or NaN
+         * if too few observations.
+         */
+        public double edgeQuantile(int edge, int hour, double q) {
+            int cell = edge * HOURS + hour;
+            if (counts[cell] < MIN_SAMPLES) {
+                return Double.NaN;
+            }
+            long rank = (long) Math.ceil(q * counts[cell]);
+            long seen = 0;
+            int[] sketch = sketches[cell];
+            for (int b = 0; b < SKETCH_BUCKETS; b++) {
+                seen += sketch[b];
+                if (seen >= rank) return bucketValue(b);
+            }
+            return bucketValue(SKETCH_BUCKETS - 1);
+        }
+    }
+
+    /**
+     * Aggregates a log file, reading it in parallel chunks.
+     */
+    public TrafficModel aggregate(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return aggregate(lines.parallel());
+        }
+    }
+
+    /**
+     * Aggregates any stream of log lines (parallel if the stream is).
+     */
+    public TrafficModel aggregate(Stream<String> lines) {
+        Partial totals = lines.collect(() -> new Partial(graph, zone), Partial::accept, Partial::merge);
+        return new TrafficModel(totals);
+    }
+
+    // Running statistics for one chunk of the log
+    static final class Partial {
+        final CompactGraph graph;
+        final ZoneOffset fixedOffset;     // Fast path when the zone has no daylight saving
+        final ZoneId zone;
+        final long[] counts;
+        final double[] means;
+        final double[] m2;                // Sum of squared deviations (Welford)
+        final int[][] sketches;
+        long records;
+        long rejected;
+
+        Partial(CompactGraph graph, ZoneId zone) {
+            this.graph = graph;
+            this.zone = zone;
+            this.fixedOffset = zone.getRules().isFixedOffset() ? zone.getRules().getOffset(Instant.EPOCH) : null;
+            int cells = graph.edgeCount() * HOURS;
+            counts = new long[cells];
+            means = new double[cells];
+            m2 = new double[cells];
+            sketches = new int[cells][];
+        }
+
+        void accept(String line) {
+            int c1 = line.indexOf(',');
+            int c2 = c1 < 0 ? -1 : line.indexOf(',', c1 + 1);
+            int c3 = c2 < 0 ? -1 : line.indexOf(',', c2 + 1);
+            if (c3 < 0) {
+                if (!line.isEmpty() && !line.startsWith("#")) rejected++;
+                return;
+            }
+            try {
+                long millis = Long.parseLong(line.substring(0, c1).trim());
+                int u = graph.indexOf(line.substring(c1 + 1, c2).trim());
+                int v = graph.indexOf(line.substring(c2 + 1, c3).trim());
+                double seconds = Double.parseDouble(line.substring(c3 + 1).trim());
+                int edge = u < 0 || v < 0 ? -1 : graph.findEdge(u, v);
+                double free = edge < 0 ? 0 : graph.weight[edge] * EdgeCostModel.SECONDS_PER_METER;
+                if (edge < 0 || !(seconds > 0) || !(free > 0) || Double.isInfinite(seconds)) {
+                    rejected++;
+                    return;
+                }
+                add(edge * HOURS + hourOf(millis), seconds / free);
+                records++;
+            } catch (NumberFormatException e) {
+                rejected++;
+            }
+        }
+
+        private int hourOf(long millis) {
+            if (fixedOffset != null) {
+                long local = Math.floorDiv(millis, 1000L) + fixedOffset.getTotalSeconds();
+                return (int) (Math.floorMod(local, 86400L) / 3600);
+            }
+            return LocalTime.ofInstant(Instant.ofEpochMilli(millis), zone).getHour();
+        }
+
+        private void add(int cell, double factor) {
+            long n = ++counts[cell];
+            double delta = factor - means[cell];
+            means[cell] += delta / n;
+            m2[cell] += delta * (factor - means[cell]);
+            if (sketches[cell] == null) sketches[cell] = new int[SKETCH_BUCKETS];
+            sketches[cell][bucketOf(factor)]++;
+        }
+
+        void merge(Partial other) {
+            for (int cell = 0; cell < counts.length; cell++) {
+                long nb = other.counts[cell];
+                if (nb == 0) continue;
+                long na = counts[cell];
+                long n = na + nb;
+                double delta = other.means[cell] - means[cell];
+                means[cell] += delta * nb / n;
+                m2[cell] += other.m2[cell] + delta * delta * ((double) na * nb / n);
+                counts[cell] = n;
+                if (sketches[cell] == null) {
+                    sketches[cell] = other.sketches[cell];
+                } else {
+                    for (int b = 0; b < SKETCH_BUCKETS; b++) sketches[cell][b] += other.sketches[cell][b];
+                }
+            }
+            records += other.records;
+            rejected += other.rejected;
+        }
+    }
+
+    static int bucketOf(double factor) {
+        int bucket = (int) Math.floor(Math.log(factor / MIN_FACTOR) / LOG_GAMMA);
+        return Math.max(0, Math.min(SKETCH_BUCKETS - 1, bucket));
+    }
+
+    // Midpoint (geometric) of a sketch bucket
+    static double bucketValue(int bucket) {
+        return MIN_FACTOR * Math.pow(GAMMA, bucket + 0.5);
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.*;
+
+/**
+ * ViaRoutes - alternative routes through via nodes from two search trees
+ * -----------------------------------------------------------------------
+ * Every node v defines a candidate route: shortest path start -> v followed by
+ * shortest path v -> end. Instead of two searches per candidate, the engine
+ * builds one forward tree from the start and one backward tree to the end, so
+ * each candidate's length and overlap with the optimal route are read in O(1).
+ *
+ * Admissibility filters (classic "via-node" alternative criteria):
+ * - Bounded stretch: length at most (1 + maxStretch) times the optimum.
+ * - Limited sharing: overlap with the optimal route (and with alternatives
+ *   already chosen) at most maxSharing times the optimum.
+ * - Local optimality: the stretch of the route around the via node, of length
+ *   localOptimality times the optimum, must itself be a shortest path (T-test).
+ *
+ * Only the first two filters are O(1); the T-test runs a small bounded search and
+ * is applied to the best-scoring survivors only.
+ */
+public class ViaRoutes {
+    static final double DEFAULT_MAX_STRETCH = 0.25;      // Up to 25% longer than optimal
+    static final double DEFAULT_MAX_SHARING = 0.8;       // At most 80% shared with optimal
+    static final double DEFAULT_LOCAL_OPTIMALITY = 0.25; // T-test window as a fraction of optimal
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Optimal route plus up to maxAlternatives admissible alternatives, using default filters.
+     */
+    public static List<KShortestPaths.PathResult> find(CompactGraph graph, int source, int target,
+        int maxAlternatives, double[] costs) {
+        return find(graph, source, target, maxAlternatives, costs,
+            DEFAULT_MAX_STRETCH, DEFAULT_MAX_SHARING, DEFAULT_LOCAL_OPTIMALITY);
+    }
+
+    /**
+     * Optimal route first, then admissible via-node alternatives in order of length.
+     * @param costs Per-edge costs (null = base weights)
+     */
+    public static List<KShortestPaths.PathResult> find(CompactGraph graph, int source, int target,
+        int maxAlternatives, double[] costs, double maxStretch, double maxSharing, double localOptimality) {
+        List<KShortestPaths.PathResult> routes = new ArrayList<>();
+        if (source < 0 || target < 0) {
+            return routes;
+        }
+        double[] edgeCosts = costs == null ? graph.weight : costs;
+        int n = graph.nodeCount();
+
+        // The two trees; each search runs to exhaustion (bounded by the stretch limit)
+        SearchSpace forward = new SearchSpace(graph);
+        SearchSpace backward = new SearchSpace(graph);
+        int[] forwardOrder = growTree(forward, edgeCosts, false, source, target, maxStretch);
+        if (forwardOrder == null) {
+            return routes;
+        }
+        int[] backwardOrder = growTree(backward, edgeCosts, true, target, source, maxStretch);
+
+        double optimal = forward.distance(target);
+        int[] optimalNodes = forward.pathTo(target);
+        routes.add(toResult(graph, forward, backward, target, forward.settledCount() + backward.settledCount()));
+        if (maxAlternatives <= 0) {
+            return routes;
+        }
+
+        boolean[] onOptimal = new boolean[n];
+        for (int v : optimalNodes) onOptimal[v] = true;
+
+        // Shared prefix/suffix with the optimal route: filled in settle order so parents come first
+        double[] sharedForward = new double[n];
+        for (int v : forwardOrder) {
+            int e = forward.parentEdge(v);
+            sharedForward[v] = onOptimal[v] ? forward.distance(v) : (e < 0 ? 0.0 : sharedForward[graph.tail[e]]);
+        }
+        double[] sharedBackward = new double[n];
+        for (int v : backwardOrder) {
+            int e = backward.parentEdge(v);
+            sharedBackward[v] = onOptimal[v] ? backward.distance(v) : (e < 0 ? 0.0 : sharedBackward[graph.head[e]]);
+        }
+
+        // O(1) scoring of every via node reached by both trees
+        double lengthLimit = (1.0 + maxStretch) * optimal + EPSILON;
+        double sharingLimit = maxSharing * optimal + EPSILON;
+        List<Integer> candidates = new ArrayList<>();
+        for (int v : forwardOrder) {
+            if (onOptimal[v] || !backward.isSettled(v)) continue;
+            double length = forward.distance(v) + backward.distance(v);
+            if (length > lengthLimit) continue;
+            if (sharedForward[v] + sharedBackward[v] > sharingLimit) continue;
+            candidates.add(v);
+        }
+        candidates.sort(Comparator.comparingDouble(v -> forward.distance(v) + backward.distance(v)));
+
+        Set<KShortestPaths.PathResult> seen = new HashSet<>(routes);
+        double window = localOptimality * optimal;
+        for (int v : candidates) {
+            if (routes.size() > maxAlternatives) break;
+            KShortestPaths.PathResult route = toResult(graph, forward, backward, v, 0);
+            if (route == null || !seen.add(route)) continue;
+            if (!sharingOk(route, routes, edgeCosts, sharingLimit)) continue;
+            if (!locallyOptimal(graph, edgeCosts, forward, backward, v, window)) continue;
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    /**
+     * Runs a search to completion within the stretch bound (or returns null when
+     * the other end is unreachable). Returns nodes in settle order.
+     */
+    private static int[] growTree(SearchSpace space, double[] costs, boolean backward, int root, int other, double maxStretch) {
+        space.start(costs, backward);
+        space.addSource(root, 0.0);
+        int[] order = new int[space.graph.nodeCount()];
+        int count = 0;
+        double limit = Double.POSITIVE_INFINITY;
+        int v;
+        while (space.peekDistance() <= limit && (v = space.settleNext()) != -1) {
+            order[count++] = v;
+            if (v == other) {
+                // No via route can be longer than the stretch limit allows
+                limit = (1.0 + maxStretch) * space.distance(v) + EPSILON;
+            }
+        }
+        if (!space.isSettled(other)) {
+            return null;
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    /**
+     * Concatenates start -> via (forward tree) and via -> end (backward tree).
+     * Returns null if the two halves overlap (the route would contain a loop).
+     */
+    private static KShortestPaths.PathResult toResult(CompactGraph graph, SearchSpace forward, SearchSpace backward, int via, int settled) {
+        int[] head = forward.pathTo(via);
+        int[] tail = backward.pathTo(via);
+        int[] nodes = new int[head.length + tail.length - 1];
+        System.arraycopy(head, 0, nodes, 0, head.length);
+        System.arraycopy(tail, 1, nodes, head.length, tail.length - 1);
+
+        Set<Integer> visited = new HashSet<>();
+        for (int v : nodes) {
+            if (!visited.add(v)) return null;
+        }
+
+        int[] edges = new int[nodes.length - 1];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = i < head.length - 1 ? forward.parentEdge(nodes[i + 1]) : backward.parentEdge(nodes[i]);
+        }
+        return new KShortestPaths.PathResult(nodes, edges, forward.distance(via) + backward.distance(via), settled);
+    }
+
+    // Overlap with every route already chosen must stay under the sharing limit
+    private static boolean sharingOk(KShortestPaths.PathResult route, List<KShortestPaths.PathResult> chosen, double[] costs, double limit) {
+        Set<Integer> edges = new HashSet<>();
+        for (int e : route.edges) edges.add(e);
+        for (KShortestPaths.PathResult other : chosen) {
+            double shared = 0.0;
+            for (int e : other.edges) {
+                if (edges.contains(e)) shared += costs[e];
+            }
+            if (shared > limit) return false;
+        }
+        return true;
+    }
+
+    /**
+     * T-test: take u about `window` before the via node on the forward tree and w
+     * about `window` after it on the backward tree; the route between them must be
+     * a shortest u -> w path.
+     */
+    private static boolean locallyOptimal(CompactGraph graph, double[] costs, SearchSpace forward, SearchSpace backward, int via, double window) {
+        int u = via;
+        while (forward.distance(via) - forward.distance(u) < window && forward.parentEdge(u) >= 0) {
+            u = graph.tail[forward.parentEdge(u)];
+        }
+        int w = via;
+        while (backward.distance(via) - backward.distance(w) < window && backward.parentEdge(w) >= 0) {
+            w = graph.head[backward.parentEdge(w)];
+        }
+        double along = (forward.distance(via) - forward.distance(u)) + (backward.distance(via) - backward.distance(w));
+
+        SearchSpace check = SearchSpace.forCurrentThread(graph);
+        check.start(costs, false);
+        check.addSource(u, 0.0);
+        while (check.peekDistance() < along - EPSILON) {
+            if (check.settleNext() == w) break;
+        }
+        return check.distance(w) >= along - EPSILON;
+    }
+}
@@ -0,0 +1,331 @@
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * WaypointTour - visit several locations in the best order
+ * ---------------------------------------------------------
+ * Campus tours and delivery rounds need a route that visits every listed stop,
+ * not just the single best one. This engine:
+ * - Builds the stop-to-stop distance table with one many-to-many computation
+ *   (DistanceTable) instead of two searches per stop.
+ * - Solves the visiting order exactly with bitmask Held-Karp dynamic programming
+ *   for up to EXACT_LIMIT waypoints.
+ * - For larger sets, runs several randomized nearest-neighbour starts in parallel,
+ *   each improved with 2-opt and Or-opt local search, and keeps the best.
+ *
+ * Supported tour types:
+ * - OPEN:      start fixed, finish at whichever waypoint is best.
+ * - CLOSED:    start fixed, return to the start.
+ * - FIXED_END: start fixed, finish at a given end location.
+ *
+ * Distances may be asymmetric (one-way paths), and all moves account for that.
+ */
+public class WaypointTour {
+    // Held-Karp memory grows as 2^n * n; 18 waypoints is about 38 MB of DP table
+    static final int EXACT_LIMIT = 18;
+    // Number of independent local-search starts for the heuristic solver
+    static final int HEURISTIC_STARTS = 16;
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    public enum TourType { OPEN, CLOSED, FIXED_END }
+
+    /**
+     * Result of a tour computation.
+     */
+    public static class TourResult {
+        public List<String> stopOrder;   // Stops in visiting order (including start and any end)
+        public int[] waypointOrder;      // Indices into the given waypoint list, in visiting order
+        public List<String> path;        // Full walking path through all stops
+        public double totalDistance;     // Total cost of the tour (infinity if impossible)
+        public boolean exact;            // True if solved with Held-Karp
+        public int nodesExplored;        // Nodes settled while building the table and legs
+        public boolean reachable;        // False if no order visits every stop (orders and path are then empty)
+
+        public TourResult(List<String> stopOrder, int[] waypointOrder, List<String> path,
+            double totalDistance, boolean exact, int nodesExplored, boolean reachable) {
+            this.stopOrder = stopOrder;
+            this.waypointOrder = waypointOrder;
+            this.path = path;
+            this.totalDistance = totalDistance;
+            this.exact = exact;
+            this.nodesExplored = nodesExplored;
+            this.reachable = reachable;
+        }
+    }
+
+    /**
+     * Plans a tour on the campus graph by distance.
+     * @param end Only used for FIXED_END tours
+     */
+    public static TourResult plan(Graph graph, Nodes start, List<Nodes> waypoints, Nodes end, TourType type) {
+        CompactGraph compact = graph.toCompact();
+        int[] ids = DistanceTable.toIds(compact, waypoints);
+        int endId = type == TourType.FIXED_END ? compact.indexOf(end) : -1;
+        return plan(compact, compact.indexOf(start), ids, endId, type, null);
+    }
+
+    /**
+     * Plans a tour on a CompactGraph.
+     * @param costs Per-edge costs (null = base weights)
+     */
+    public static TourResult plan(CompactGraph graph, int start, int[] waypoints, int end, TourType type, double[] costs) {
+        if (start < 0 || (type == TourType.FIXED_END && end < 0)) {
+            throw new IllegalArgumentException("Start/end location is not part of the graph");
+        }
+        int m = waypoints.length;
+
+        // Table stops: 0 = start, 1..m = waypoints, m + 1 = end (closed tours end at the start)
+        int[] stops = new int[type == TourType.OPEN ? m + 1 : m + 2];
+        stops[0] = start;
+        System.arraycopy(waypoints, 0, stops, 1, m);
+        if (type != TourType.OPEN) {
+            stops[m + 1] = type == TourType.CLOSED ? start : end;
+        }
+        DistanceTable.TableResult table = DistanceTable.compute(graph, stops, stops, costs);
+        int k = stops.length;
+        double[] d = table.distances;
+
+        boolean exact = m <= EXACT_LIMIT;
+        int[] order = exact ? heldKarp(d, k, m, type != TourType.OPEN) : localSearch(d, k, m, type != TourType.OPEN);
+
+        double total = order == null ? INF : tourCost(d, k, order);
+        int explored = (int) table.settledNodes;
+        if (total == INF) {
+            // Some stop cannot be reached in any order: report that instead of an arbitrary order
+            return new TourResult(new ArrayList<>(), new int[0], new ArrayList<>(), INF, exact, explored, false);
+        }
+
+        // Expand the legs into a full walking path
+        List<String> path = new ArrayList<>();
+        SearchSpace space = SearchSpace.forCurrentThread(graph);
+        path.add(graph.name(stops[order[0]]));
+        for (int i = 0; i + 1 < order.length; i++) {
+            int from = stops[order[i]];
+            int to = stops[order[i + 1]];
+            space.start(costs, false);
+            space.addSource(from, 0.0);
+            int v;
+            while ((v = space.settleNext()) != -1 && v != to) {
+                // Run until the next stop is settled
+            }
+            int[] leg = space.pathTo(to);
+            explored += space.settledCount();
+            for (int j = 1; j < leg.length; j++) {
+                path.add(graph.name(leg[j]));
+            }
+        }
+
+        List<String> stopOrder = new ArrayList<>();
+        int[] waypointOrder = new int[m];
+        int w = 0;
+        for (int index : order) {
+            stopOrder.add(graph.name(stops[index]));
+            if (index >= 1 && index <= m) waypointOrder[w++] = index - 1;
+        }
+        return new TourResult(stopOrder, waypointOrder, path, total, exact, explored, true);
+    }
+
+    /**
+     * Exact solver. dp[mask][j] = cheapest way to leave the start, visit the
+     * waypoints in mask and stand at waypoint j. Returns null if no order
+     * visits every waypoint (and reaches the end).
+     */
+    static int[] heldKarp(double[] d, int k, int m, boolean hasEnd) {
+        if (m == 0) {
+            return hasEnd ? new int[] { 0, k - 1 } : new int[] { 0 };
+        }
+        int full = (1 << m) - 1;
+        double[] dp = new double[(full + 1) * m];
+        byte[] parent = new byte[(full + 1) * m];
+        Arrays.fill(dp, INF);
+        for (int j = 0; j < m; j++) {
+            dp[(1 << j) * m + j] = d[0 * k + (j + 1)];
+            parent[(1 << j) * m + j] = -1;
+        }
+
+        for (int mask = 1; mask <= full; mask++) {
+            for (int j = 0; j < m; j++) {
+                double base = dp[mask * m + j];
+                if ((mask & (1 << j)) == 0 || base == INF) continue;
+                int rowOffset = (j + 1) * k;
+                for (int next = 0; next < m; next++) {
+                    if ((mask & (1 << next)) != 0) continue;
+                    int nextMask = mask | (1 << next);
+                    double candidate = base + d[rowOffset + next + 1];
+                    if (candidate < dp[nextMask * m + next]) {
+                        dp[nextMask * m + next] = candidate;
+                        parent[nextMask * m + next] = (byte) j;
+                    }
+                }
+            }
+        }
+
+        // Best last waypoint (plus the final leg for closed / fixed-end tours)
+        int last = 0;
+        double best = INF;
+        for (int j = 0; j < m; j++) {
+            double total = dp[full * m + j] + (hasEnd ? d[(j + 1) * k + (k - 1)] : 0.0);
+            if (total < best) {
+                best = total;
+                last = j;
+            }
+        }
+
+        if (best == INF) {
+            return null;
+        }
+
+        int[] order = new int[hasEnd ? m + 2 : m + 1];
+        int mask = full;
+        int j = last;
+        for (int pos = m; pos >= 1; pos--) {
+            order[pos] = j + 1;
+            int previous = parent[mask * m + j];
+            mask &= ~(1 << j);
+            j = previous;
+        }
+        order[0] = 0;
+        if (hasEnd) order[m + 1] = k - 1;
+        return order;
+    }
+
+    /**
+     * Heuristic solver: parallel randomized starts, each polished by local search.
+     */
+    static int[] localSearch(double[] d, int k, int m, boolean hasEnd) {
+        return IntStream.range(0, HEURISTIC_STARTS).parallel()
+            .mapToObj(seed -> improve(d, k, nearestNeighbour(d, k, m, hasEnd, new SplittableRandom(seed)), hasEnd))
+            .min(Comparator.comparingDouble(order -> tourCost(d, k, order)))
+            .orElseThrow();
+    }
+
+    /**
+     * Nearest-neighbour construction; start 0 is deterministic, others pick among
+     * the two nearest unvisited waypoints at random.
+     */
+    private static int[] nearestNeighbour(double[] d, int k, int m, boolean hasEnd, SplittableRandom random) {
+        int[] order = new int[hasEnd ? m + 2 : m + 1];
+        boolean[] used = new boolean[m + 1];
+        int current = 0;
+        for (int pos = 1; pos <= m; pos++) {
+            int first = -1, second = -1;
+            for (int j = 1; j <= m; j++) {
+                if (used[j]) continue;
+                double dj = d[current * k + j];
+                if (first == -1 || dj < d[current * k + first]) {
+                    second = first;
+                    first = j;
+                } else if (second == -1 || dj < d[current * k + second]) {
+                    second = j;
+                }
+            }
+            int pick = second != -1 && random.nextInt(3) == 0 ? second : first;
+            used[pick] = true;
+            order[pos] = pick;
+            current = pick;
+        }
+        if (hasEnd) order[m + 1] = k - 1;
+        return order;
+    }
+
+    /**
+     * Alternates 2-opt (segment reversal) and Or-opt (move a run of 1-3 stops)
+     * until neither finds an improvement. Position 0 (and the end, if fixed) never move.
+     */
+    static int[] improve(double[] d, int k, int[] order, boolean hasEnd) {
+        int last = hasEnd ? order.length - 2 : order.length - 1;
+        boolean improved = true;
+        while (improved) {
+            improved = twoOpt(d, k, order, last) | orOpt(d, k, order, last);
+        }
+        return order;
+    }
+
+    private static boolean twoOpt(double[] d, int k, int[] order, int last) {
+        int len = order.length;
+        boolean any = false;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            // Prefix sums of leg costs walked forwards and backwards (asymmetric distances)
+            double[] forward = new double[len];
+            double[] reverse = new double[len];
+            for (int i = 1; i < len; i++) {
+                forward[i] = forward[i - 1] + d[order[i - 1] * k + order[i]];
+                reverse[i] = reverse[i - 1] + d[order[i] * k + order[i - 1]];
+            }
+            search:
+            for (int i = 1; i < last; i++) {
+                for (int j = i + 1; j <= last; j++) {
+                    double before = d[order[i - 1] * k + order[i]] + (forward[j] - forward[i]);
+                    double after = d[order[i - 1] * k + order[j]] + (reverse[j] - reverse[i]);
+                    if (j + 1 < len) {
+                        before += d[order[j] * k + order[j + 1]];
+                        after += d[order[i] * k + order[j + 1]];
+                    }
+                    if (after < before - 1e-9) {
+                        for (int a = i, b = j; a < b; a++, b--) {
+                            int tmp = order[a];
+                            order[a] = order[b];
+                            order[b] = tmp;
+                        }
+                        improved = any = true;
+                        break search;
+                    }
+                }
+            }
+        }
+        return any;
+    }
+
+    private static boolean orOpt(double[] d, int k, int[] order, int last) {
+        int len = order.length;
+        boolean any = false;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            search:
+            for (int segment = 1; segment <= 3; segment++) {
+                for (int i = 1; i + segment - 1 <= last; i++) {
+                    int j = i + segment - 1;                 // Segment is order[i..j]
+                    int a = order[i - 1];
+                    int b = j + 1 < len ? order[j + 1] : -1;
+                    double removeGain = d[a * k + order[i]] + (b >= 0 ? d[order[j] * k + b] - d[a * k + b] : 0.0);
+
+                    for (int p = 0; p <= last; p++) {
+                        if (p >= i - 1 && p <= j) continue;  // Insert after order[p], outside the segment
+                        int q = p + 1 < len ? order[p + 1] : -1;
+                        double insertCost = d[order[p] * k + order[i]] + (q >= 0 ? d[order[j] * k + q] - d[order[p] * k + q] : 0.0);
+                        if (insertCost < removeGain - 1e-9) {
+                            moveSegment(order, i, j, p);
+                            improved = any = true;
+                            break search;
+                        }
+                    }
+                }
+            }
+        }
+        return any;
+    }
+
+    // Moves order[i..j] so that it follows the element currently at position p
+    private static void moveSegment(int[] order, int i, int j, int p) {
+        int[] segment = Arrays.copyOfRange(order, i, j + 1);
+        int length = segment.length;
+        if (p > j) {
+            System.arraycopy(order, j + 1, order, i, p - j);
+            System.arraycopy(segment, 0, order, p - length + 1, length);
+        } else {
+            System.arraycopy(order, p + 1, order, p + 1 + length, i - p - 1);
+            System.arraycopy(segment, 0, order, p + 1, length);
+        }
+    }
+
+    static double tourCost(double[] d, int k, int[] order) {
+        double total = 0.0;
+        for (int i = 0; i + 1 < order.length; i++) {
+            total += d[order[i] * k + order[i + 1]];
+        }
+        return total;
+    }
+}
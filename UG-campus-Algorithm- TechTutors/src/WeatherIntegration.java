@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -51,7 +52,11 @@ public class WeatherIntegration {
     }
     
     // Stores weather data for each campus location
-    private static Map<String, WeatherCondition> campusWeather = new HashMap<>();
+    // (replaced as a whole by updateWeather, never modified after startup)
+    private static volatile Map<String, WeatherCondition> campusWeather = new HashMap<>();
+    
+    // Bumped on every weather update
+    private static final AtomicLong version = new AtomicLong();
     
     // Initialize weather data once (mock data for campus locations)
     static {
@@ -72,6 +77,22 @@ public class WeatherIntegration {
         campusWeather.put("Banking Square", new WeatherCondition("Sunny", 28.0, 63.0, 3.0, false, 9.0));
     }
     
+    /**
+     * Replaces the weather at a location. Readers see either the old or the
+     * new conditions, never a half-updated map.
+     */
+    public static synchronized void updateWeather(String location, WeatherCondition condition) {
+        Map<String, WeatherCondition> updated = new HashMap<>(campusWeather);
+        updated.put(location, condition);
+        campusWeather = updated;
+        version.incrementAndGet();
+    }
+    
+    // Changes whenever calculateWeatherFactor may return different values
+    public static long version() {
+        return version.get();
+    }
+    
     /**
      * Calculates a weather factor multiplier for a location.
      * A factor > 1 means slower travel due to weather conditions.